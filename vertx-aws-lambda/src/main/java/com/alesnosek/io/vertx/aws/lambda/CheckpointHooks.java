@@ -0,0 +1,249 @@
+package com.alesnosek.io.vertx.aws.lambda;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.impl.VertxInternal;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * Checkpoint/restore (CRaC, Lambda SnapStart) support for the Vert.x resources.
+ * Before a checkpoint, the pooled HTTP connections are closed, the timers are
+ * cancelled and the event loops are quiesced. After the restore, the timers are
+ * re-armed and the HTTP clients are re-created on their next use. Application
+ * specific actions like reseeding random generators can be added as handlers.
+ */
+public class CheckpointHooks implements Resource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CheckpointHooks.class);
+
+    private static final long QUIESCE_TIMEOUT_MS = 5000;
+
+    private final Vertx vertx;
+
+    private final AtomicLong timerIds = new AtomicLong();
+    private final Map<Long, Timer> timers = new ConcurrentHashMap<>();
+    private final List<ClientSupplier> httpClients = new CopyOnWriteArrayList<>();
+    private final List<Handler<Void>> checkpointHandlers = new CopyOnWriteArrayList<>();
+    private final List<Handler<Void>> restoreHandlers = new CopyOnWriteArrayList<>();
+
+    private volatile boolean checkpointed;
+
+    public CheckpointHooks(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
+    /**
+     * Registers these hooks with the global CRaC context. The caller must keep
+     * a reference to this object as the context may reference it weakly only.
+     */
+    public CheckpointHooks register() {
+        Core.getGlobalContext().register(this);
+        return this;
+    }
+
+    /**
+     * Adds a handler called before the checkpoint
+     */
+    public CheckpointHooks beforeCheckpointHandler(Handler<Void> handler) {
+        checkpointHandlers.add(handler);
+        return this;
+    }
+
+    /**
+     * Adds a handler called after the restore
+     */
+    public CheckpointHooks afterRestoreHandler(Handler<Void> handler) {
+        restoreHandlers.add(handler);
+        return this;
+    }
+
+    /**
+     * Returns a supplier of an HttpClient whose pooled connections are closed
+     * before the checkpoint. A new client is created on the first use after the
+     * restore.
+     */
+    public Supplier<HttpClient> httpClient(HttpClientOptions options) {
+        ClientSupplier supplier = new ClientSupplier(options);
+        httpClients.add(supplier);
+        return supplier;
+    }
+
+    /**
+     * Sets a one-shot timer which survives the checkpoint/restore. The
+     * remaining delay is re-armed after the restore.
+     *
+     * @return the timer id to be used with {@link #cancelTimer(long)}
+     */
+    public long setTimer(long delay, Handler<Long> handler) {
+        return addTimer(delay, false, handler);
+    }
+
+    /**
+     * Sets a periodic timer which survives the checkpoint/restore
+     *
+     * @return the timer id to be used with {@link #cancelTimer(long)}
+     */
+    public long setPeriodic(long delay, Handler<Long> handler) {
+        return addTimer(delay, true, handler);
+    }
+
+    public boolean cancelTimer(long id) {
+        Timer timer = timers.remove(id);
+        if (timer == null) {
+            return false;
+        }
+        timer.cancel();
+        return true;
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) throws Exception {
+        LOGGER.debug("Preparing Vert.x for checkpoint");
+        checkpointed = true;
+        for (Handler<Void> handler : checkpointHandlers) {
+            handler.handle(null);
+        }
+        for (Timer timer : timers.values()) {
+            timer.suspend();
+        }
+        for (ClientSupplier client : httpClients) {
+            client.close();
+        }
+        quiesceEventLoops();
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) throws Exception {
+        LOGGER.debug("Resuming Vert.x after restore");
+        checkpointed = false;
+        for (Timer timer : timers.values()) {
+            timer.arm();
+        }
+        for (Handler<Void> handler : restoreHandlers) {
+            handler.handle(null);
+        }
+    }
+
+    private long addTimer(long delay, boolean periodic, Handler<Long> handler) {
+        long id = timerIds.incrementAndGet();
+        Timer timer = new Timer(id, delay, periodic, handler);
+        timers.put(id, timer);
+        if (!checkpointed) {
+            timer.arm();
+        }
+        return id;
+    }
+
+    /**
+     * Waits until all the tasks queued on the event loops have been executed
+     */
+    private void quiesceEventLoops() throws InterruptedException {
+        EventLoopGroup group = ((VertxInternal) vertx).getEventLoopGroup();
+        List<io.netty.util.concurrent.Future<?>> tasks = new ArrayList<>();
+        for (EventExecutor executor : group) {
+            tasks.add(executor.submit(() -> {
+                // nothing to do, just wait for the preceding tasks
+            }));
+        }
+        for (io.netty.util.concurrent.Future<?> task : tasks) {
+            if (!task.await(QUIESCE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Event loop has not quiesced in time");
+            }
+        }
+    }
+
+    private class Timer {
+
+        private final long id;
+        private final long delay;
+        private final boolean periodic;
+        private final Handler<Long> handler;
+
+        private long vertxId = -1;
+        private long remaining;
+        private long due;
+
+        Timer(long id, long delay, boolean periodic, Handler<Long> handler) {
+            this.id = id;
+            this.delay = delay;
+            this.periodic = periodic;
+            this.handler = handler;
+            this.remaining = delay;
+        }
+
+        synchronized void arm() {
+            due = System.currentTimeMillis() + remaining;
+            if (periodic) {
+                vertxId = vertx.setTimer(Math.max(1, remaining), v -> {
+                    synchronized (this) {
+                        vertxId = vertx.setPeriodic(delay, p -> handler.handle(id));
+                        remaining = delay;
+                    }
+                    handler.handle(id);
+                });
+            } else {
+                vertxId = vertx.setTimer(Math.max(1, remaining), v -> {
+                    timers.remove(id);
+                    handler.handle(id);
+                });
+            }
+        }
+
+        synchronized void suspend() {
+            cancel();
+            if (!periodic) {
+                remaining = Math.max(0, due - System.currentTimeMillis());
+            }
+        }
+
+        synchronized void cancel() {
+            if (vertxId >= 0) {
+                vertx.cancelTimer(vertxId);
+                vertxId = -1;
+            }
+        }
+    }
+
+    private class ClientSupplier implements Supplier<HttpClient> {
+
+        private final HttpClientOptions options;
+        private HttpClient client;
+
+        ClientSupplier(HttpClientOptions options) {
+            this.options = options;
+        }
+
+        @Override
+        public synchronized HttpClient get() {
+            if (client == null) {
+                client = vertx.createHttpClient(options);
+            }
+            return client;
+        }
+
+        synchronized void close() {
+            if (client != null) {
+                client.close();
+                client = null;
+            }
+        }
+    }
+}
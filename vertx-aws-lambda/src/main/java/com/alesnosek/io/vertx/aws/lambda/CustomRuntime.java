@@ -0,0 +1,404 @@
+package com.alesnosek.io.vertx.aws.lambda;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.alesnosek.io.vertx.aws.lambda.impl.BufferOutputStream;
+import com.alesnosek.io.vertx.aws.lambda.impl.ClientRequestOutputStream;
+import com.alesnosek.io.vertx.aws.lambda.impl.RuntimeContext;
+import com.amazonaws.services.lambda.runtime.Context;
+
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.core.impl.VertxInternal;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * Entry point for running as a Lambda custom runtime. Instead of being called
+ * by the AWS Java runtime, this class polls the Lambda Runtime API for
+ * invocations using a non-blocking keep-alive HttpClient and pushes each event
+ * through a {@link LambdaServer}.
+ * <p>
+ * When started using the {@link #main(String[])} method, the name of the
+ * {@link LambdaHandler} subclass is taken from the _HANDLER environment
+ * variable and the Runtime API endpoint from the AWS_LAMBDA_RUNTIME_API
+ * environment variable.
+ * <p>
+ * Multiple invocations can be processed at the same time, see
+ * {@link #setConcurrency(int)}. The responses can be streamed to the client,
+ * see {@link #setResponseStreaming(boolean)}.
+ */
+public class CustomRuntime {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomRuntime.class);
+
+    static final String RUNTIME_PATH = "/2018-06-01/runtime";
+
+    static final String HEADER_REQUEST_ID = "Lambda-Runtime-Aws-Request-Id";
+    static final String HEADER_DEADLINE_MS = "Lambda-Runtime-Deadline-Ms";
+    static final String HEADER_FUNCTION_ARN = "Lambda-Runtime-Invoked-Function-Arn";
+    static final String HEADER_TRACE_ID = "Lambda-Runtime-Trace-Id";
+    static final String HEADER_ERROR_TYPE = "Lambda-Runtime-Function-Error-Type";
+    static final String HEADER_RESPONSE_MODE = "Lambda-Runtime-Function-Response-Mode";
+
+    static final String TRACE_HEADER_PROPERTY = "com.amazonaws.xray.traceHeader";
+
+    static final String STREAMING_CONTENT_TYPE = "application/vnd.awslambda.http-integration-response";
+
+    private static final long RETRY_DELAY_MS = 100;
+
+    private final Vertx vertx;
+    private final String host;
+    private final int port;
+    private final ServerFactory serverFactory;
+
+    private final Map<String, Context> invocations = new ConcurrentHashMap<>();
+    private final List<Poller> pollers = new ArrayList<>();
+    private int concurrency = defaultConcurrency();
+    private boolean responseStreaming;
+    private volatile boolean stopped;
+
+    /**
+     * Creates a runtime which processes the invocations with the LambdaServers
+     * of the given handler, i.e. with its request handler and its
+     * {@link LambdaHandler#configureServer(LambdaServer)} settings
+     */
+    public CustomRuntime(String runtimeApi, LambdaHandler handler) {
+        this(handler.vertx(), runtimeApi, handler::createServer);
+    }
+
+    /**
+     * Creates a runtime which processes the invocations with LambdaServers in
+     * the default configuration
+     */
+    public CustomRuntime(Vertx vertx, String runtimeApi, Handler<HttpServerRequest> requestHandler) {
+        this(vertx, runtimeApi, (context, input, output) -> {
+            LambdaServer server = new LambdaServer(vertx, context, input, output);
+            server.requestHandler(requestHandler);
+            return server;
+        });
+    }
+
+    public CustomRuntime(Vertx vertx, String runtimeApi, ServerFactory serverFactory) {
+        this.vertx = vertx;
+        int colon = runtimeApi.lastIndexOf(':');
+        if (colon < 0) {
+            this.host = runtimeApi;
+            this.port = 80;
+        } else {
+            this.host = runtimeApi.substring(0, colon);
+            this.port = Integer.parseInt(runtimeApi.substring(colon + 1));
+        }
+        this.serverFactory = serverFactory;
+    }
+
+    /**
+     * Sets the maximum number of invocations processed at the same time. Each
+     * of the concurrent invocations is pinned to one of the event loops in a
+     * round-robin fashion. The default value is taken from the
+     * AWS_LAMBDA_MAX_CONCURRENCY environment variable and is 1 if the variable
+     * is not set.
+     * <p>
+     * The X-Ray trace header of an invocation is available from its
+     * {@link RuntimeContext#getTraceId()}, see {@link #invocation(String)}.
+     * The com.amazonaws.xray.traceHeader system property, which is global to
+     * the JVM, is only set if the concurrency is 1.
+     */
+    public CustomRuntime setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+        }
+        if (!pollers.isEmpty()) {
+            throw new IllegalStateException("Runtime has already been started");
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Enables streaming of the responses. The response of every invocation is
+     * posted to the Runtime API in the streaming response mode while it's
+     * being written, see {@link LambdaServer#setResponseStreaming(boolean)}.
+     * This requires the function to be invoked with response streaming (e.g.
+     * via a function URL with the RESPONSE_STREAM invoke mode).
+     */
+    public CustomRuntime setResponseStreaming(boolean responseStreaming) {
+        this.responseStreaming = responseStreaming;
+        return this;
+    }
+
+    public boolean isResponseStreaming() {
+        return responseStreaming;
+    }
+
+    /**
+     * Returns the number of invocations which are currently in progress
+     */
+    public int inFlightInvocations() {
+        return invocations.size();
+    }
+
+    /**
+     * Returns the Lambda context of the invocation in progress with the given
+     * request id, or null if there is no such invocation
+     */
+    public Context invocation(String requestId) {
+        return invocations.get(requestId);
+    }
+
+    /**
+     * Starts polling the Runtime API for invocations
+     */
+    public CustomRuntime start() {
+        if (!pollers.isEmpty()) {
+            throw new IllegalStateException("Runtime has already been started");
+        }
+        stopped = false;
+        for (int i = 0; i < concurrency; i++) {
+            // every new event loop context is assigned the next event loop
+            ContextInternal context = ((VertxInternal) vertx).createEventLoopContext(null, null, new JsonObject(),
+                    Thread.currentThread().getContextClassLoader());
+            Poller poller = new Poller(context);
+            pollers.add(poller);
+            context.runOnContext(v -> poller.start());
+        }
+        return this;
+    }
+
+    /**
+     * Stops polling the Runtime API. Invocations which are in progress are
+     * still completed.
+     */
+    public void stop() {
+        stopped = true;
+        for (Poller poller : pollers) {
+            poller.stop();
+        }
+        pollers.clear();
+    }
+
+    private static int defaultConcurrency() {
+        String maxConcurrency = System.getenv("AWS_LAMBDA_MAX_CONCURRENCY");
+        if (maxConcurrency != null) {
+            try {
+                return Math.max(1, Integer.parseInt(maxConcurrency));
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid AWS_LAMBDA_MAX_CONCURRENCY: " + maxConcurrency);
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Polls the Runtime API and processes one invocation at a time on its own
+     * event loop
+     */
+    private class Poller {
+
+        private final ContextInternal context;
+        private HttpClient client;
+
+        Poller(ContextInternal context) {
+            this.context = context;
+        }
+
+        void start() {
+            HttpClientOptions options = new HttpClientOptions().setDefaultHost(host).setDefaultPort(port)
+                    .setKeepAlive(true).setMaxPoolSize(1);
+            client = vertx.createHttpClient(options);
+            nextInvocation();
+        }
+
+        void stop() {
+            context.runOnContext(v -> client.close());
+        }
+
+        private void nextInvocation() {
+            if (stopped) {
+                return;
+            }
+            HttpClientRequest request = client.get(RUNTIME_PATH + "/invocation/next", response -> {
+                if (response.statusCode() != 200) {
+                    LOGGER.error("Failed to fetch the next invocation, status code: " + response.statusCode());
+                    response.endHandler(v -> retry());
+                    return;
+                }
+                response.bodyHandler(event -> invoke(response, event));
+            });
+            request.exceptionHandler(t -> {
+                if (!stopped) {
+                    LOGGER.error("Failed to fetch the next invocation", t);
+                    retry();
+                }
+            });
+            request.end();
+        }
+
+        private void retry() {
+            vertx.setTimer(RETRY_DELAY_MS, id -> nextInvocation());
+        }
+
+        private void invoke(HttpClientResponse response, Buffer event) {
+            String requestId = response.getHeader(HEADER_REQUEST_ID);
+            String functionArn = response.getHeader(HEADER_FUNCTION_ARN);
+            String deadline = response.getHeader(HEADER_DEADLINE_MS);
+            String traceId = response.getHeader(HEADER_TRACE_ID);
+            if (traceId != null && concurrency == 1) {
+                // the global property is shared by all the invocations, it's
+                // only correct if they don't overlap
+                System.setProperty(TRACE_HEADER_PROPERTY, traceId);
+            }
+
+            long deadlineMs = Long.MAX_VALUE;
+            if (deadline != null) {
+                try {
+                    deadlineMs = Long.parseLong(deadline);
+                } catch (NumberFormatException e) {
+                    LOGGER.warn("Invalid deadline received from the Runtime API: " + deadline);
+                }
+            }
+            RuntimeContext lambdaContext = new RuntimeContext(requestId, functionArn, deadlineMs, traceId);
+            invocations.put(requestId, lambdaContext);
+
+            OutputStream output;
+            if (responseStreaming) {
+                output = new ClientRequestOutputStream(() -> streamResponse(requestId));
+            } else {
+                output = new BufferOutputStream(result -> context.runOnContext(v -> postResponse(requestId, result)));
+            }
+
+            LambdaServer server = serverFactory.createServer(lambdaContext,
+                    new ByteBufInputStream(event.getByteBuf()), output);
+            // the output stream depends on the streaming mode of the runtime
+            server.setResponseStreaming(responseStreaming);
+            // a failure of the request handler is answered by the server with
+            // an error response, it's posted the same way as any response
+            server.processRequest();
+        }
+
+        private void postResponse(String requestId, Buffer result) {
+            post(requestId, RUNTIME_PATH + "/invocation/" + requestId + "/response", result);
+        }
+
+        private HttpClientRequest streamResponse(String requestId) {
+            HttpClientRequest request = createPost(requestId,
+                    RUNTIME_PATH + "/invocation/" + requestId + "/response");
+            request.setChunked(true);
+            request.putHeader(HEADER_RESPONSE_MODE, "streaming");
+            request.putHeader("Content-Type", STREAMING_CONTENT_TYPE);
+            return request;
+        }
+
+        private void post(String requestId, String uri, Buffer body) {
+            createPost(requestId, uri).end(body);
+        }
+
+        private HttpClientRequest createPost(String requestId, String uri) {
+            invocations.remove(requestId);
+            HttpClientRequest request = client.post(uri, response -> {
+                if (response.statusCode() != 202) {
+                    LOGGER.error("Runtime API rejected " + uri + ", status code: " + response.statusCode());
+                }
+                response.endHandler(v -> nextInvocation());
+            });
+            request.exceptionHandler(t -> {
+                LOGGER.error("Failed to post " + uri, t);
+                retry();
+            });
+            return request;
+        }
+    }
+
+    private static JsonObject errorBody(Throwable t) {
+        JsonObject error = new JsonObject();
+        error.put("errorMessage", String.valueOf(t.getMessage()));
+        error.put("errorType", t.getClass().getName());
+        return error;
+    }
+
+    /**
+     * Reports an initialization error to the Runtime API. This is done using a
+     * blocking call as no event loop may be available at this point.
+     */
+    static void postInitError(String runtimeApi, Throwable t) {
+        try {
+            URL url = new URL("http://" + runtimeApi + RUNTIME_PATH + "/init/error");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty(HEADER_ERROR_TYPE, "Unhandled");
+            connection.setDoOutput(true);
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(errorBody(t).encode().getBytes(StandardCharsets.UTF_8));
+            }
+            connection.getResponseCode();
+        } catch (IOException e) {
+            LOGGER.error("Failed to report the initialization error", e);
+        }
+    }
+
+    public static void main(String[] args) {
+        String runtimeApi = System.getenv("AWS_LAMBDA_RUNTIME_API");
+        String handlerName = args.length > 0 ? args[0] : System.getenv("_HANDLER");
+        if (runtimeApi == null || handlerName == null) {
+            LOGGER.error("AWS_LAMBDA_RUNTIME_API and _HANDLER environment variables must be set");
+            System.exit(1);
+        }
+
+        // the handler may be given as class::method, only the class is relevant
+        int separator = handlerName.indexOf("::");
+        if (separator >= 0) {
+            handlerName = handlerName.substring(0, separator);
+        }
+
+        LambdaHandler handler;
+        try {
+            handler = (LambdaHandler) Class.forName(handlerName).getDeclaredConstructor().newInstance();
+            handler.init();
+        } catch (InvocationTargetException e) {
+            // report the failure of the handler's constructor itself
+            LOGGER.error("Failed to initialize the handler " + handlerName, e.getCause());
+            postInitError(runtimeApi, e.getCause());
+            System.exit(1);
+            return;
+        } catch (Throwable t) {
+            LOGGER.error("Failed to initialize the handler " + handlerName, t);
+            postInitError(runtimeApi, t);
+            System.exit(1);
+            return;
+        }
+
+        new CustomRuntime(runtimeApi, handler).start();
+    }
+
+    /**
+     * Creates the LambdaServer which processes a single invocation
+     */
+    @FunctionalInterface
+    public interface ServerFactory {
+
+        LambdaServer createServer(Context context, InputStream input, OutputStream output);
+    }
+}
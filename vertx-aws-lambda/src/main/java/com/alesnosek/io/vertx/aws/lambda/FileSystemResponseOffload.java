@@ -0,0 +1,64 @@
+package com.alesnosek.io.vertx.aws.lambda;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Offloads the response bodies to files in a local directory, for example a
+ * directory served by another server, and redirects to them by their file
+ * name. This is a stand-in for an object store in tests and local
+ * environments. The headers of the response aren't stored.
+ */
+public class FileSystemResponseOffload implements ResponseOffload {
+
+    private final Vertx vertx;
+    private final File directory;
+    private final String baseUrl;
+
+    /**
+     * @param baseUrl
+     *            URL of the directory, the file name is appended to it
+     */
+    public FileSystemResponseOffload(Vertx vertx, String directory, String baseUrl) {
+        this.vertx = vertx;
+        this.directory = new File(directory);
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public void offload(Buffer body, MultiMap headers, Handler<AsyncResult<String>> handler) {
+        String name = UUID.randomUUID().toString();
+        vertx.<String>executeBlocking(future -> {
+            try {
+                write(new File(directory, name), body);
+                future.complete(baseUrl + name);
+            } catch (IOException e) {
+                future.fail(e);
+            }
+        }, false, handler);
+    }
+
+    private void write(File file, Buffer body) throws IOException {
+        Files.createDirectories(directory.toPath());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE)) {
+            // written straight from the (possibly memory mapped) body
+            for (ByteBuffer nioBuffer : body.getByteBuf().nioBuffers()) {
+                while (nioBuffer.hasRemaining()) {
+                    channel.write(nioBuffer);
+                }
+            }
+        }
+    }
+}
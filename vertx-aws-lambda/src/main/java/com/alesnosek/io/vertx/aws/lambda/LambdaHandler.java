@@ -0,0 +1,219 @@
+package com.alesnosek.io.vertx.aws.lambda;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * Base class for Lambda functions implemented with Vert.x. The Vertx instance
+ * and the request handler (typically a vertx-web Router) are created once per
+ * container and reused across warm invocations, as is the
+ * {@link StaticAssetCache}. Only a lightweight
+ * {@link LambdaServer} is created for every invocation.
+ * <p>
+ * The initialization, including the priming, runs in the constructor, i.e.
+ * during the Lambda init phase and before a SnapStart snapshot is taken, so
+ * that it isn't billed to the first invocation. As the creation methods are
+ * called from the constructor, they mustn't depend on the fields initialized
+ * by the subclass.
+ * <p>
+ * The Vertx instance is prepared for a checkpoint/restore (Lambda SnapStart)
+ * by {@link CheckpointHooks}.
+ */
+public abstract class LambdaHandler implements RequestStreamHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LambdaHandler.class);
+
+    private Vertx vertx;
+    private Handler<HttpServerRequest> requestHandler;
+    private CheckpointHooks checkpointHooks;
+    private StaticAssetCache staticAssetCache;
+
+    protected LambdaHandler() {
+        this(true);
+    }
+
+    /**
+     * @param initialize
+     *            false defers the initialization to the first invocation or to
+     *            an explicit {@link #init()} call
+     */
+    protected LambdaHandler(boolean initialize) {
+        if (initialize) {
+            try {
+                init();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * This is a handler method called by the AWS Lambda runtime
+     */
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        init();
+
+        // trigger the HTTP request processing and block the main thread until
+        // the request has been fully processed
+        LambdaServer server = createServer(context, input, output);
+        waitForCompletion(server.processRequest(), context);
+    }
+
+    /**
+     * Creates the LambdaServer which processes a single invocation, with the
+     * container-scoped request handler and static asset cache, configured by
+     * {@link #configureServer(LambdaServer)}. It's also used by
+     * {@link CustomRuntime} for every invocation.
+     */
+    protected LambdaServer createServer(Context context, InputStream input, OutputStream output) {
+        LambdaServer server = new LambdaServer(vertx, context, input, output);
+        server.setStaticAssetCache(staticAssetCache);
+        configureServer(server);
+        server.requestHandler(requestHandler);
+        return server;
+    }
+
+    /**
+     * Creates the Vertx instance and the request handler unless they have
+     * already been created by a previous invocation in this container
+     */
+    protected synchronized void init() throws IOException {
+        if (vertx == null) {
+            // Lambda function is allowed write access to /tmp only
+            if (System.getProperty("vertx.cacheDirBase") == null) {
+                System.setProperty("vertx.cacheDirBase", "/tmp/.vertx");
+            }
+            vertx = createVertx();
+            checkpointHooks = new CheckpointHooks(vertx).register();
+            requestHandler = createRequestHandler(vertx);
+            staticAssetCache = createStaticAssetCache();
+            LOGGER.debug("Vert.x initialized");
+
+            // primed through the configured servers, as the invocations are
+            Primer primer = new Primer(this::createServer);
+            configurePriming(primer);
+            if (primer.hasEvents()) {
+                long elapsed = primer.prime();
+                LOGGER.info("Priming completed in " + elapsed + " ms");
+            }
+        }
+    }
+
+    /**
+     * Returns the container-scoped Vertx instance, or null if it hasn't been
+     * initialized yet
+     */
+    protected Vertx vertx() {
+        return vertx;
+    }
+
+    /**
+     * Returns the container-scoped request handler, or null if it hasn't been
+     * initialized yet
+     */
+    protected Handler<HttpServerRequest> requestHandler() {
+        return requestHandler;
+    }
+
+    /**
+     * Returns the container-scoped cache of the static assets, or null if it
+     * hasn't been initialized yet or the caching is disabled
+     */
+    protected StaticAssetCache staticAssetCache() {
+        return staticAssetCache;
+    }
+
+    /**
+     * Returns the checkpoint/restore hooks of the container-scoped Vertx
+     * instance, or null if it hasn't been initialized yet. The hooks are
+     * registered with the CRaC context during the initialization, before the
+     * request handler is created, so that the timers and clients set up by
+     * {@link #createRequestHandler(Vertx)} are covered by the snapshot.
+     */
+    protected CheckpointHooks checkpointHooks() {
+        return checkpointHooks;
+    }
+
+    /**
+     * Creates the Vertx instance. This method is called once per container.
+     */
+    protected Vertx createVertx() {
+        return Vertx.vertx();
+    }
+
+    /**
+     * Creates the handler for the incoming HTTP requests. This method is called
+     * once per container and is the place to build the Router and to deploy the
+     * verticles.
+     */
+    protected abstract Handler<HttpServerRequest> createRequestHandler(Vertx vertx);
+
+    /**
+     * Creates the cache of the files sent with HttpServerResponse.sendFile()
+     * which is shared by all the invocations in the container. This method is
+     * called once per container, returning null disables the caching.
+     */
+    protected StaticAssetCache createStaticAssetCache() {
+        return new StaticAssetCache();
+    }
+
+    /**
+     * Configures the LambdaServer created for every invocation, for example
+     * its text and binary media types. Nothing is changed by default.
+     */
+    protected void configureServer(LambdaServer server) {
+        // default settings
+    }
+
+    /**
+     * Adds the synthetic events replayed during the initialization to warm up
+     * the request processing. No events are added by default.
+     */
+    protected void configurePriming(Primer primer) throws IOException {
+        // no priming by default
+    }
+
+    private void waitForCompletion(CompletableFuture<Void> completion, Context context) throws IOException {
+        try {
+            if (context == null) {
+                completion.get();
+            } else {
+                completion.get(context.getRemainingTimeInMillis(), TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response");
+        } catch (TimeoutException e) {
+            throw new IOException("Response has not been completed in time", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
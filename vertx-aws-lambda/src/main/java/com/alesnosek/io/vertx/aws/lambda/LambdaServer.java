@@ -1,25 +1,38 @@
 package com.alesnosek.io.vertx.aws.lambda;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.alesnosek.io.vertx.aws.lambda.impl.BodyDecoder;
+import com.alesnosek.io.vertx.aws.lambda.impl.CompletionOutputStream;
+import com.alesnosek.io.vertx.aws.lambda.impl.EnvelopeWriter;
 import com.alesnosek.io.vertx.aws.lambda.impl.HttpServerRequestImpl;
 import com.alesnosek.io.vertx.aws.lambda.impl.HttpServerResponseImpl;
+import com.alesnosek.io.vertx.aws.lambda.impl.LambdaEvent;
+import com.alesnosek.io.vertx.aws.lambda.impl.LambdaEventDecoder;
+import com.alesnosek.io.vertx.aws.lambda.impl.MediaTypePolicy;
+import com.alesnosek.io.vertx.aws.lambda.impl.ResponseCompressor;
+import com.alesnosek.io.vertx.aws.lambda.impl.SpillBuffer;
 import com.amazonaws.services.lambda.runtime.Context;
 
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpConnection;
+import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerRequest;
-import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.http.ServerWebSocket;
 import io.vertx.core.json.DecodeException;
-import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.core.streams.ReadStream;
@@ -28,10 +41,18 @@ public class LambdaServer implements HttpServer {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LambdaServer.class);
 
+    /**
+     * Default time reserved for writing the timeout response before the Lambda
+     * function is terminated
+     */
+    public static final long DEFAULT_TIMEOUT_MARGIN = 500;
+
     private final Vertx vertx;
     private final Context context;
     private final InputStream input;
     private final OutputStream output;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private HttpServerResponseImpl response;
 
     private Handler<HttpServerRequest> requestHandler;
     private Handler<ServerWebSocket> websocketHandler;
@@ -39,11 +60,24 @@ public class LambdaServer implements HttpServer {
     private String localHost = "0.0.0.0";
     private int localPort = 0;
 
+    private long timeoutMargin = DEFAULT_TIMEOUT_MARGIN;
+    private int bodyChunkSize = BodyDecoder.DEFAULT_CHUNK_SIZE;
+    private MediaTypePolicy mediaTypePolicy = new MediaTypePolicy(MediaTypePolicy.DEFAULT_TEXT_MEDIA_TYPES,
+            Collections.emptyList());
+    private ResponseCompressor compressor = ResponseCompressor.DISABLED;
+    private boolean responseStreaming;
+    private StaticAssetCache staticAssetCache;
+    private boolean autoETag;
+    private String bodySpillDirectory = System.getProperty("java.io.tmpdir");
+    private int bodySpillThreshold = SpillBuffer.DEFAULT_SPILL_THRESHOLD;
+    private ResponseOffload responseOffload;
+    private boolean processed;
+
     public LambdaServer(Vertx vertx, Context context, InputStream input, OutputStream output) {
         this.vertx = vertx;
         this.context = context;
         this.input = input;
-        this.output = output;
+        this.output = new CompletionOutputStream(output, completion);
     }
 
     @Override
@@ -149,28 +183,315 @@ public class LambdaServer implements HttpServer {
         return localPort;
     }
 
-    private void processRequest() {
-        HttpServerResponse response = new HttpServerResponseImpl(output);
-        Buffer inputBuffer;
+    /**
+     * Sets the time in milliseconds reserved for writing a 504 response before
+     * the Lambda function times out. If the response hasn't been ended when
+     * the deadline minus this margin passes, a 504 response is written.
+     */
+    public LambdaServer setTimeoutMargin(long timeoutMargin) {
+        this.timeoutMargin = timeoutMargin;
+        return this;
+    }
+
+    public long getTimeoutMargin() {
+        return timeoutMargin;
+    }
+
+    /**
+     * Sets the maximum size of the request body chunks passed to the request's
+     * data handler, at least 3
+     */
+    public LambdaServer setBodyChunkSize(int bodyChunkSize) {
+        if (bodyChunkSize < BodyDecoder.MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Body chunk size must be at least " + BodyDecoder.MIN_CHUNK_SIZE);
+        }
+        this.bodyChunkSize = bodyChunkSize;
+        return this;
+    }
+
+    public int getBodyChunkSize() {
+        return bodyChunkSize;
+    }
+
+    /**
+     * Sets the media types of the response bodies which are sent as plain
+     * text instead of base64 encoded, see
+     * {@link MediaTypePolicy#DEFAULT_TEXT_MEDIA_TYPES} for the defaults. The
+     * patterns may contain '*' wildcards like "text/*". An empty list makes
+     * all the responses base64 encoded.
+     */
+    public LambdaServer setTextMediaTypes(List<String> textMediaTypes) {
+        mediaTypePolicy = new MediaTypePolicy(textMediaTypes, mediaTypePolicy.binaryMediaTypes());
+        return this;
+    }
+
+    public List<String> getTextMediaTypes() {
+        return mediaTypePolicy.textMediaTypes();
+    }
+
+    /**
+     * Sets the media types of the response bodies which are always sent
+     * base64 encoded even if they match one of the text media types. None by
+     * default.
+     */
+    public LambdaServer setBinaryMediaTypes(List<String> binaryMediaTypes) {
+        mediaTypePolicy = new MediaTypePolicy(mediaTypePolicy.textMediaTypes(), binaryMediaTypes);
+        return this;
+    }
+
+    public List<String> getBinaryMediaTypes() {
+        return mediaTypePolicy.binaryMediaTypes();
+    }
+
+    /**
+     * Enables the compression of the response bodies with gzip or deflate, as
+     * accepted by the client. Disabled by default. Even if disabled, a body is
+     * compressed if it would exceed the Lambda payload limit otherwise.
+     */
+    public LambdaServer setCompressionSupported(boolean compressionSupported) {
+        compressor = new ResponseCompressor(compressionSupported, compressor.level(), compressor.minSize(),
+                compressor.mediaTypes());
+        return this;
+    }
+
+    public boolean isCompressionSupported() {
+        return compressor.enabled();
+    }
+
+    /**
+     * Sets the compression level between 1 (fastest) and 9 (best compression),
+     * default is 6
+     */
+    public LambdaServer setCompressionLevel(int compressionLevel) {
+        compressor = new ResponseCompressor(compressor.enabled(), compressionLevel, compressor.minSize(),
+                compressor.mediaTypes());
+        return this;
+    }
+
+    public int getCompressionLevel() {
+        return compressor.level();
+    }
+
+    /**
+     * Sets the minimum size in bytes of the response bodies which are
+     * compressed, default is 1024
+     */
+    public LambdaServer setCompressionMinSize(int compressionMinSize) {
+        compressor = new ResponseCompressor(compressor.enabled(), compressor.level(), compressionMinSize,
+                compressor.mediaTypes());
+        return this;
+    }
+
+    public int getCompressionMinSize() {
+        return compressor.minSize();
+    }
+
+    /**
+     * Sets the media types of the response bodies which are compressed, the
+     * text media types by default
+     */
+    public LambdaServer setCompressibleMediaTypes(List<String> compressibleMediaTypes) {
+        compressor = new ResponseCompressor(compressor.enabled(), compressor.level(), compressor.minSize(),
+                compressibleMediaTypes);
+        return this;
+    }
+
+    public List<String> getCompressibleMediaTypes() {
+        return compressor.mediaTypes();
+    }
+
+    /**
+     * Enables the response streaming mode. Instead of an API Gateway proxy
+     * response, a prelude with the status code and the headers is written,
+     * followed by eight zero bytes and the raw body. Every chunk written to the
+     * response is flushed to the output stream right away, so that the client
+     * receives the first bytes before the response has been ended. This is the
+     * format of the Lambda response streaming HTTP integration; the
+     * {@link CustomRuntime} sends it using the streaming response mode.
+     */
+    public LambdaServer setResponseStreaming(boolean responseStreaming) {
+        this.responseStreaming = responseStreaming;
+        return this;
+    }
+
+    public boolean isResponseStreaming() {
+        return responseStreaming;
+    }
+
+    /**
+     * Sets the cache of the files sent with HttpServerResponse.sendFile(). To
+     * be effective, the same cache has to be set on the servers of all the
+     * invocations in the container, as {@link LambdaHandler} does. Files are
+     * not cached by default.
+     */
+    public LambdaServer setStaticAssetCache(StaticAssetCache staticAssetCache) {
+        this.staticAssetCache = staticAssetCache;
+        return this;
+    }
+
+    public StaticAssetCache getStaticAssetCache() {
+        return staticAssetCache;
+    }
+
+    /**
+     * Enables the automatic ETag of the responses to the GET and HEAD
+     * requests. The body is hashed as it's written to the response and a weak
+     * ETag is added unless the application sets one. If the ETag matches the
+     * request's If-None-Match header, an empty 304 response is sent instead
+     * of the body. Disabled by default, the streamed responses are never
+     * affected.
+     */
+    public LambdaServer setAutoETag(boolean autoETag) {
+        this.autoETag = autoETag;
+        return this;
+    }
+
+    public boolean isAutoETag() {
+        return autoETag;
+    }
+
+    /**
+     * Sets the directory of the temporary files the response bodies are
+     * spilled to, the system's temporary directory (/tmp on Lambda) by
+     * default. Null keeps all the bodies on the heap.
+     */
+    public LambdaServer setBodySpillDirectory(String bodySpillDirectory) {
+        this.bodySpillDirectory = bodySpillDirectory;
+        return this;
+    }
+
+    public String getBodySpillDirectory() {
+        return bodySpillDirectory;
+    }
+
+    /**
+     * Sets the size in bytes over which a response body written in several
+     * chunks is spilled from the heap to a memory mapped temporary file,
+     * default is 4 MB
+     */
+    public LambdaServer setBodySpillThreshold(int bodySpillThreshold) {
+        this.bodySpillThreshold = bodySpillThreshold;
+        return this;
+    }
+
+    public int getBodySpillThreshold() {
+        return bodySpillThreshold;
+    }
+
+    /**
+     * Sets the offload storing the response bodies which would exceed the 6 MB
+     * Lambda payload limit even after compression, e.g. in an object store.
+     * The client is redirected to the stored body with a 303 response. Not
+     * set by default, see {@link FileSystemResponseOffload} for a local
+     * implementation.
+     */
+    public LambdaServer setResponseOffload(ResponseOffload responseOffload) {
+        this.responseOffload = responseOffload;
+        return this;
+    }
+
+    public ResponseOffload getResponseOffload() {
+        return responseOffload;
+    }
+
+    /**
+     * Returns the time in milliseconds remaining until the Lambda invocation
+     * of the given request times out. This can be used to set the timeouts of
+     * outbound calls. Long.MAX_VALUE is returned if the request has no
+     * deadline.
+     */
+    public static long remainingTimeMillis(HttpServerRequest request) {
+        if (request instanceof HttpServerRequestImpl) {
+            return ((HttpServerRequestImpl) request).remainingTimeMillis();
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns a future which is completed once the Lambda response has been
+     * written. The future is completed exceptionally if the request handler
+     * throws an exception.
+     */
+    public CompletableFuture<Void> completion() {
+        return completion;
+    }
+
+    /**
+     * Processes the Lambda request. This method is called by the listen
+     * methods, it can also be called directly instead of them. The request is
+     * handled on the Vert.x context of the calling thread, or on a new event
+     * loop context if called from a non Vert.x thread. In the latter case the
+     * request is handled asynchronously.
+     *
+     * @return future completed once the Lambda response has been written, see
+     *         {@link #completion()}
+     */
+    public CompletableFuture<Void> processRequest() {
+        if (processed) {
+            throw new IllegalStateException("Request has already been processed");
+        }
+        processed = true;
+        // outside of Vert.x a new context is created on every call, the request
+        // and the response must share a single one
+        io.vertx.core.Context vertxContext = vertx.getOrCreateContext();
+        if (Vertx.currentContext() == vertxContext) {
+            processRequest(vertxContext);
+        } else {
+            vertxContext.runOnContext(v -> processRequest(vertxContext));
+        }
+        return completion;
+    }
+
+    private void processRequest(io.vertx.core.Context vertxContext) {
         try {
-            inputBuffer = inputStreamToBuffer(input);
+            handleRequest(vertxContext);
+        } catch (Throwable t) {
+            LOGGER.error("Failed to process the Lambda request", t);
+            // failed first, closing the output would complete it normally
+            completion.completeExceptionally(t);
+            if (response != null) {
+                response.fail();
+            } else {
+                errorResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR.reasonPhrase());
+            }
+        }
+    }
+
+    private void handleRequest(io.vertx.core.Context vertxContext) {
+        response = new HttpServerResponseImpl(output);
+        response.setMediaTypePolicy(mediaTypePolicy);
+        response.setCompressor(compressor);
+        response.setContext(vertxContext);
+        response.setStreaming(responseStreaming);
+        response.setStaticAssetCache(staticAssetCache);
+        response.setSpill(bodySpillDirectory != null ? new File(bodySpillDirectory) : null, bodySpillThreshold);
+        response.setResponseOffload(responseOffload);
+        LambdaEvent event;
+        try {
+            // decoded straight from the stream, the parser reads it through
+            // its own recycled buffers
+            event = LambdaEventDecoder.decode(input);
         } catch (IOException e) {
             String msg = "Failed to read the Lambda request";
             LOGGER.error(msg, e);
             errorResponse(msg);
             return;
-        }
-
-        JsonObject inputJson;
-        try {
-            inputJson = new JsonObject(inputBuffer);
         } catch (DecodeException e) {
             String msg = "Failed to decode the Lambda request";
             LOGGER.error(msg, e);
             errorResponse(msg);
             return;
         }
-        HttpServerRequestImpl request = new HttpServerRequestImpl(localHost, localPort, inputJson, response);
+        HttpServerRequestImpl request = new HttpServerRequestImpl(localHost, localPort, event, response);
+        response.setRequestHeaders(request.headers());
+        response.setAutoETag(autoETag && (request.method() == HttpMethod.GET || request.method() == HttpMethod.HEAD));
+        request.setContext(vertxContext);
+        request.setChunkSize(bodyChunkSize);
+        if (context != null) {
+            long deadline = System.currentTimeMillis() + context.getRemainingTimeInMillis();
+            request.setDeadline(deadline);
+            startTimeoutTimer(deadline, response);
+        }
 
         if (requestHandler != null) {
             requestHandler.handle(request);
@@ -179,26 +500,24 @@ public class LambdaServer implements HttpServer {
         request.handleEnd();
     }
 
-    private Buffer inputStreamToBuffer(InputStream input) throws IOException {
-        byte[] data = new byte[1024];
-
-        Buffer buffer = Buffer.buffer();
-        while (((input.read(data, 0, data.length))) != -1) {
-            buffer.appendBytes(data);
-        }
-        return buffer;
+    private void startTimeoutTimer(long deadline, HttpServerResponseImpl response) {
+        long delay = Math.max(1, deadline - timeoutMargin - System.currentTimeMillis());
+        long timerId = vertx.setTimer(delay, id -> {
+            if (response.timeout()) {
+                LOGGER.warn("Request has not been completed before the Lambda deadline");
+            }
+        });
+        completion.whenComplete((v, t) -> vertx.cancelTimer(timerId));
     }
 
     private void errorResponse(String msg) {
-        JsonObject outputJson = new JsonObject();
-
-        outputJson.put("headers", new JsonObject());
-        outputJson.put("statusCode", 500);
-        outputJson.put("isBase64Encoded", false);
-        outputJson.put("body", msg);
-
         try {
-            output.write(outputJson.toBuffer().getBytes());
+            if (responseStreaming) {
+                new EnvelopeWriter(output).writePrelude(500, Collections.emptyMap(), Collections.emptyList());
+                output.write(msg.getBytes(StandardCharsets.UTF_8));
+            } else {
+                new EnvelopeWriter(output).write(500, Collections.emptyMap(), Buffer.buffer(msg), false);
+            }
         } catch (IOException e) {
             LOGGER.error("Failed to write the Lambda response", e);
         }
@@ -0,0 +1,152 @@
+package com.alesnosek.io.vertx.aws.lambda;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * Replays synthetic API Gateway events through the complete request processing
+ * pipeline during the function initialization. This loads the classes and
+ * warms up the JIT compiler before the real traffic (or a snapshot) arrives.
+ * The responses are discarded.
+ */
+public class Primer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Primer.class);
+
+    private final CustomRuntime.ServerFactory serverFactory;
+    private final List<Buffer> events = new ArrayList<>();
+
+    private int iterations = 1;
+    private long timeoutMillis = 10000;
+
+    /**
+     * Creates a primer which replays the events through the LambdaServers
+     * created by the given factory. {@link LambdaHandler} passes its own
+     * factory, so that its {@link LambdaHandler#configureServer(LambdaServer)}
+     * settings and static asset cache are warmed up as well.
+     */
+    public Primer(CustomRuntime.ServerFactory serverFactory) {
+        this.serverFactory = serverFactory;
+    }
+
+    /**
+     * Creates a primer which replays the events through LambdaServers in the
+     * default configuration
+     */
+    public Primer(Vertx vertx, Handler<HttpServerRequest> requestHandler) {
+        this((context, input, output) -> {
+            LambdaServer server = new LambdaServer(vertx, context, input, output);
+            server.requestHandler(requestHandler);
+            return server;
+        });
+    }
+
+    /**
+     * Adds an API Gateway event to be replayed
+     */
+    public Primer addEvent(Buffer event) {
+        events.add(event);
+        return this;
+    }
+
+    /**
+     * Adds an API Gateway event loaded from a classpath resource
+     */
+    public Primer addResource(String name) throws IOException {
+        InputStream input = Thread.currentThread().getContextClassLoader().getResourceAsStream(name);
+        if (input == null) {
+            throw new IOException("Resource not found: " + name);
+        }
+        try {
+            Buffer event = Buffer.buffer();
+            byte[] data = new byte[1024];
+            int read;
+            while ((read = input.read(data, 0, data.length)) != -1) {
+                event.appendBytes(data, 0, read);
+            }
+            return addEvent(event);
+        } finally {
+            input.close();
+        }
+    }
+
+    public boolean hasEvents() {
+        return !events.isEmpty();
+    }
+
+    /**
+     * Sets how many times each of the events is replayed, default is 1
+     */
+    public Primer setIterations(int iterations) {
+        this.iterations = iterations;
+        return this;
+    }
+
+    /**
+     * Sets how long to wait for a single response, default is 10 seconds
+     */
+    public Primer setTimeout(long timeout, TimeUnit unit) {
+        this.timeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Replays all the events and blocks until their responses have been
+     * completed. This method must not be called on an event loop thread.
+     *
+     * @return time spent priming in milliseconds
+     */
+    public long prime() {
+        if (Context.isOnEventLoopThread()) {
+            throw new IllegalStateException("Cannot prime on an event loop thread");
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (Buffer event : events) {
+                replay(event);
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private void replay(Buffer event) {
+        OutputStream output = new OutputStream() {
+
+            @Override
+            public void write(int b) {
+                // discard
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                // discard
+            }
+        };
+
+        LambdaServer server = serverFactory.createServer(null, new ByteBufInputStream(event.getByteBuf()), output);
+        try {
+            server.processRequest().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            LOGGER.warn("Priming request has not completed in time");
+        } catch (ExecutionException e) {
+            LOGGER.warn("Priming request has failed", e.getCause());
+        }
+    }
+}
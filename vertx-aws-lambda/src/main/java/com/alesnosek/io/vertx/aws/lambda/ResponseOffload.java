@@ -0,0 +1,27 @@
+package com.alesnosek.io.vertx.aws.lambda;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Stores the response bodies which exceed the Lambda payload limit, for
+ * example in an object store. The client is redirected to the returned URL
+ * with a 303 response instead of receiving the body.
+ *
+ * @see LambdaServer#setResponseOffload(ResponseOffload)
+ */
+@FunctionalInterface
+public interface ResponseOffload {
+
+    /**
+     * Stores the body and calls the handler with the URL the body can be
+     * fetched from
+     *
+     * @param headers
+     *            headers of the response, e.g. the Content-Type and the
+     *            Content-Encoding of the body
+     */
+    void offload(Buffer body, MultiMap headers, Handler<AsyncResult<String>> handler);
+}
@@ -0,0 +1,191 @@
+package com.alesnosek.io.vertx.aws.lambda;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import com.alesnosek.io.vertx.aws.lambda.impl.ETagDigest;
+import com.alesnosek.io.vertx.aws.lambda.impl.FileContent;
+import com.alesnosek.io.vertx.aws.lambda.impl.MediaTypePolicy;
+import com.alesnosek.io.vertx.aws.lambda.impl.ResponseCompressor;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.impl.MimeMapping;
+
+/**
+ * Caches the files sent by HttpServerResponse.sendFile() across the warm
+ * invocations of a container. For every file, its content, a gzip compressed
+ * variant (for the text media types) and a strong ETag are kept, so that the
+ * repeated requests neither read nor compress the file again. The cache is
+ * bounded by the total size of the cached content and evicts the least
+ * recently used files. A cached file is reloaded if its size or modification
+ * time changes.
+ */
+public class StaticAssetCache {
+
+    public static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+    public static final int DEFAULT_MAX_ASSET_SIZE = 1024 * 1024;
+
+    private static final int GZIP_LEVEL = 9;
+    private static final ResponseCompressor GZIP_COMPRESSOR = new ResponseCompressor(true, GZIP_LEVEL, 0,
+            MediaTypePolicy.DEFAULT_TEXT_MEDIA_TYPES);
+
+    private final long maxSize;
+    private final int maxAssetSize;
+    private final LinkedHashMap<String, Asset> assets = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    public StaticAssetCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_ASSET_SIZE);
+    }
+
+    /**
+     * @param maxSize
+     *            maximum total size in bytes of the cached content including
+     *            the gzip variants
+     * @param maxAssetSize
+     *            files larger than this are not cached
+     */
+    public StaticAssetCache(long maxSize, int maxAssetSize) {
+        this.maxSize = maxSize;
+        this.maxAssetSize = maxAssetSize;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public int getMaxAssetSize() {
+        return maxAssetSize;
+    }
+
+    /**
+     * Returns the cached asset of the file, the file is loaded if it hasn't
+     * been cached yet or has changed. Null is returned if the file is too
+     * large to be cached.
+     */
+    public Asset get(File file) throws IOException {
+        String key = file.getAbsolutePath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        synchronized (this) {
+            Asset asset = assets.get(key);
+            if (asset != null && asset.length == length && asset.lastModified == lastModified) {
+                return asset;
+            }
+        }
+        if (length > maxAssetSize) {
+            return null;
+        }
+
+        Asset asset = load(file, length, lastModified);
+        synchronized (this) {
+            Asset previous = assets.put(key, asset);
+            if (previous != null) {
+                size -= previous.size();
+            }
+            size += asset.size();
+            evict();
+        }
+        return asset;
+    }
+
+    /**
+     * Returns the number of cached files
+     */
+    public synchronized int entries() {
+        return assets.size();
+    }
+
+    /**
+     * Returns the total size in bytes of the cached content
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        assets.clear();
+        size = 0;
+    }
+
+    private void evict() {
+        Iterator<Asset> it = assets.values().iterator();
+        while (size > maxSize && it.hasNext()) {
+            size -= it.next().size();
+            it.remove();
+        }
+    }
+
+    private static Asset load(File file, long length, long lastModified) throws IOException {
+        // copied onto the heap, a cached mapping would keep the file open
+        Buffer content = FileContent.read(file, 0, length).copy();
+        String contentType = MimeMapping.getMimeTypeForFilename(file.getName());
+        Buffer gzipContent = null;
+        // the media types of the server aren't known here, the asset is
+        // assumed to be sent base64 encoded
+        if (contentType != null && GZIP_COMPRESSOR.varies(contentType, content.length(), true)) {
+            gzipContent = GZIP_COMPRESSOR.compress(content, ResponseCompressor.GZIP);
+            if (gzipContent.length() >= content.length()) {
+                gzipContent = null;
+            }
+        }
+        ETagDigest digest = new ETagDigest();
+        digest.update(content);
+        return new Asset(content, gzipContent, digest.hash(), length, lastModified);
+    }
+
+    /**
+     * Cached content of a file
+     */
+    public static final class Asset {
+
+        private final Buffer content;
+        private final Buffer gzipContent;
+        private final String hash;
+        private final long length;
+        private final long lastModified;
+
+        Asset(Buffer content, Buffer gzipContent, String hash, long length, long lastModified) {
+            this.content = content;
+            this.gzipContent = gzipContent;
+            this.hash = hash;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        public Buffer content() {
+            return content;
+        }
+
+        /**
+         * Returns the gzip compressed content, or null if the file isn't
+         * compressible
+         */
+        public Buffer gzipContent() {
+            return gzipContent;
+        }
+
+        /**
+         * Returns the strong ETag of the content or of its gzip variant,
+         * including the quotes
+         */
+        public String etag(boolean gzip) {
+            return gzip ? "\"" + hash + "-gz\"" : "\"" + hash + "\"";
+        }
+
+        /**
+         * Returns true if the If-None-Match header matches the ETag of either
+         * variant
+         */
+        public boolean matches(String ifNoneMatch) {
+            return ETagDigest.matches(ifNoneMatch, etag(false))
+                    || (gzipContent != null && ETagDigest.matches(ifNoneMatch, etag(true)));
+        }
+
+        private long size() {
+            return content.length() + (gzipContent != null ? gzipContent.length() : 0);
+        }
+    }
+}
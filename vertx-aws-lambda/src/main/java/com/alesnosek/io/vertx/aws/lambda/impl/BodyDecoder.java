@@ -0,0 +1,82 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Decodes the body of a Lambda event incrementally. Each call to
+ * {@link #next()} decodes only the next chunk of the body, so the complete
+ * decoded body never needs to be held in memory at once.
+ */
+public class BodyDecoder {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    // a base64 encoded chunk holds at least one group of 3 bytes
+    public static final int MIN_CHUNK_SIZE = 3;
+
+    private final String body;
+    private final boolean base64;
+    private final int chunkLength;
+
+    private byte[] base64Chunk;
+    private int position;
+
+    /**
+     * @param chunkSize
+     *            maximum size of the decoded chunks in bytes (for base64 encoded
+     *            bodies), or in characters (for text bodies)
+     */
+    public BodyDecoder(String body, boolean base64, int chunkSize) {
+        if (chunkSize < MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be at least " + MIN_CHUNK_SIZE);
+        }
+        this.body = body;
+        this.base64 = base64;
+        // every 4 base64 characters decode into 3 bytes
+        this.chunkLength = base64 ? chunkSize / 3 * 4 : chunkSize;
+    }
+
+    public boolean hasNext() {
+        return body != null && position < body.length();
+    }
+
+    /**
+     * Decodes the next chunk of the body
+     *
+     * @throws IllegalArgumentException
+     *             if the base64 encoded body is invalid
+     */
+    public Buffer next() {
+        int end = Math.min(body.length(), position + chunkLength);
+        return base64 ? decodeBase64(end) : encodeText(end);
+    }
+
+    private Buffer decodeBase64(int end) {
+        int length = end - position;
+        if (base64Chunk == null) {
+            base64Chunk = new byte[Math.min(chunkLength, body.length())];
+        }
+        for (int i = 0; i < length; i++) {
+            base64Chunk[i] = (byte) body.charAt(position + i);
+        }
+        position = end;
+        ByteBuffer decoded = Base64.getDecoder().decode(ByteBuffer.wrap(base64Chunk, 0, length));
+        return Buffer.buffer(Unpooled.wrappedBuffer(decoded));
+    }
+
+    private Buffer encodeText(int end) {
+        // don't split a surrogate pair between two chunks
+        if (end < body.length() && Character.isHighSurrogate(body.charAt(end - 1))) {
+            end--;
+        }
+        ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(body, position, end));
+        Buffer chunk = Buffer.buffer(Unpooled.wrappedBuffer(encoded));
+        position = end;
+        return chunk;
+    }
+}
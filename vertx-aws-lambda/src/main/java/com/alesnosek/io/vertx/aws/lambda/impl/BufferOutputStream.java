@@ -0,0 +1,39 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.OutputStream;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Output stream collecting the written data in a Buffer. The close handler
+ * receives the collected data once the stream has been closed.
+ */
+public class BufferOutputStream extends OutputStream {
+
+    private final Buffer buffer = Buffer.buffer();
+    private final Handler<Buffer> closeHandler;
+    private boolean closed;
+
+    public BufferOutputStream(Handler<Buffer> closeHandler) {
+        this.closeHandler = closeHandler;
+    }
+
+    @Override
+    public void write(int b) {
+        buffer.appendByte((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        buffer.appendBytes(b, off, len);
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            closeHandler.handle(buffer);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Parses the Range header of a request for a representation of the given size
+ * and assembles the multipart/byteranges body of a response with several
+ * ranges. The parts of the multipart body aren't copied, the body is a
+ * composite of the part headers and the given part buffers.
+ */
+public final class ByteRanges {
+
+    /**
+     * Range headers with more ranges than this are ignored
+     */
+    static final int MAX_RANGES = 16;
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    private ByteRanges() {
+    }
+
+    /**
+     * Returns the ranges of the Range header. Null is returned if the header
+     * has to be ignored (invalid syntax, unknown unit or too many ranges) and
+     * an empty list if none of the ranges is satisfiable.
+     */
+    public static List<ByteRange> parse(String header, long size) {
+        String value = header.trim();
+        if (!value.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+        String[] specs = value.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            long first = parseNumber(spec.substring(0, dash).trim());
+            String lastValue = spec.substring(dash + 1).trim();
+            long last = lastValue.isEmpty() ? Long.MAX_VALUE : parseNumber(lastValue);
+            if (first == -1) {
+                if (last < 0 || last == Long.MAX_VALUE) {
+                    return null;
+                }
+                // suffix range with the number of the last bytes
+                first = Math.max(0, size - last);
+                last = size - 1;
+            } else if (first < -1 || last < first) {
+                return null;
+            }
+            if (first >= size) {
+                // not satisfiable
+                continue;
+            }
+            ranges.add(new ByteRange(first, Math.min(last, size - 1)));
+        }
+        return ranges;
+    }
+
+    /**
+     * Returns a random boundary of the multipart body
+     */
+    public static String boundary() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
+    }
+
+    /**
+     * Returns the multipart/byteranges body with the given parts
+     *
+     * @param contentType
+     *            Content-Type of the parts, may be null
+     */
+    public static Buffer multipart(List<ByteRange> ranges, List<Buffer> parts, String contentType, long size,
+            String boundary) {
+        ByteBuf[] buffers = new ByteBuf[parts.size() * 2 + 1];
+        StringBuilder head = new StringBuilder(128);
+        for (int i = 0; i < parts.size(); i++) {
+            head.setLength(0);
+            head.append("\r\n--").append(boundary).append("\r\n");
+            if (contentType != null) {
+                head.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+            head.append("Content-Range: ").append(ranges.get(i).contentRange(size)).append("\r\n\r\n");
+            buffers[i * 2] = Unpooled.copiedBuffer(head, StandardCharsets.ISO_8859_1);
+            buffers[i * 2 + 1] = parts.get(i).getByteBuf();
+        }
+        buffers[buffers.length - 1] = Unpooled.copiedBuffer("\r\n--" + boundary + "--\r\n",
+                StandardCharsets.ISO_8859_1);
+        return Buffer.buffer(Unpooled.wrappedBuffer(buffers.length, buffers));
+    }
+
+    /**
+     * Returns the parsed non-negative number, -1 if the value is empty or -2
+     * if it's not a number
+     */
+    private static long parseNumber(String value) {
+        if (value.isEmpty()) {
+            return -1;
+        }
+        long number = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9' || number > (Long.MAX_VALUE - 9) / 10) {
+                return -2;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    /**
+     * Range of bytes with both the first and the last position included
+     */
+    public static final class ByteRange {
+
+        private final long first;
+        private final long last;
+
+        ByteRange(long first, long last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        public long first() {
+            return first;
+        }
+
+        public long last() {
+            return last;
+        }
+
+        public long length() {
+            return last - first + 1;
+        }
+
+        /**
+         * Returns the value of the Content-Range header for this range
+         */
+        public String contentRange(long size) {
+            return "bytes " + first + "-" + last + "/" + size;
+        }
+
+        @Override
+        public String toString() {
+            return first + "-" + last;
+        }
+    }
+}
@@ -1,367 +1,291 @@
-/*
- * Copyright (c) 2011-2013 The original author or authors
- * ------------------------------------------------------
- * All rights reserved. This program and the accompanying materials
- * are made available under the terms of the Eclipse Public License v1.0
- * and Apache License v2.0 which accompanies this distribution.
- *
- *     The Eclipse Public License is available at
- *     http://www.eclipse.org/legal/epl-v10.html
- *
- *     The Apache License v2.0 is available at
- *     http://www.opensource.org/licenses/apache2.0.php
- *
- * You may elect to redistribute this code under either of these licenses.
- */
-
 package com.alesnosek.io.vertx.aws.lambda.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.function.Consumer;
 
 import io.vertx.core.MultiMap;
 
 /**
- * This multi-map implementation has case sensitive keys, and can be used to
- * hold some HTTP request parameters. (created as a copy&paste of
- * io.vertx.core.http.CaseInsensitiveHeaders and slightly modified)
- *
- * @author <a href="mailto:nmaurer@redhat.com">Norman Maurer</a>
+ * MultiMap with case sensitive names, used for the HTTP request parameters.
+ * Every name has a single node holding its values in an array. The nodes are
+ * kept in a power-of-two hash table which grows with the number of names and
+ * in a linked list preserving the order in which the names were added. The
+ * entries are iterated name by name in that order, each name with its values
+ * in the order they were added. The number of names is maintained, so that
+ * size() doesn't need to collect them.
  */
 public final class CaseSensitiveMultiMapImpl implements MultiMap {
-    private static final int BUCKET_SIZE = 17;
 
-    private static int hash(String name) {
-        int h = 0;
-        for (int i = name.length() - 1; i >= 0; i--) {
-            char c = name.charAt(i);
-            h = 31 * h + c;
-        }
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int INITIAL_VALUES = 2;
 
-        if (h > 0) {
-            return h;
-        } else if (h == Integer.MIN_VALUE) {
-            return Integer.MAX_VALUE;
-        } else {
-            return -h;
-        }
-    }
+    private Node[] table;
+    // sentinel of the list of the names in their insertion order
+    private final Node head = new Node(0, null);
+    private int size;
+    private int entryCount;
 
-    private MultiMap set0(Iterable<Map.Entry<String, String>> map) {
-        clear();
-        for (Map.Entry<String, String> entry : map) {
-            add(entry.getKey(), entry.getValue());
-        }
-        return this;
+    public CaseSensitiveMultiMapImpl() {
+        head.before = head.after = head;
     }
 
     @Override
-    public MultiMap setAll(MultiMap headers) {
-        return set0(headers);
+    public String get(String name) {
+        Node node = find(Objects.requireNonNull(name, "name"));
+        return node != null ? node.values[0] : null;
     }
 
     @Override
-    public MultiMap setAll(Map<String, String> headers) {
-        return set0(headers.entrySet());
+    public String get(CharSequence name) {
+        return get(name.toString());
     }
 
     @Override
-    public int size() {
-        return names().size();
-    }
-
-    private static boolean eq(String name1, String name2) {
-        int nameLen = name1.length();
-        if (nameLen != name2.length()) {
-            return false;
-        }
-
-        for (int i = nameLen - 1; i >= 0; i--) {
-            char c1 = name1.charAt(i);
-            char c2 = name2.charAt(i);
-            if (c1 != c2) {
-                return false;
-            }
+    public List<String> getAll(String name) {
+        Node node = find(Objects.requireNonNull(name, "name"));
+        if (node == null) {
+            return Collections.emptyList();
         }
-        return true;
-    }
-
-    private static int index(int hash) {
-        return hash % BUCKET_SIZE;
-    }
-
-    private final MapEntry[] entries = new MapEntry[BUCKET_SIZE];
-    private final MapEntry head = new MapEntry(-1, null, null);
-
-    public CaseSensitiveMultiMapImpl() {
-        head.before = head.after = head;
-    }
-
-    @Override
-    public MultiMap add(final String name, final String strVal) {
-        int h = hash(name);
-        int i = index(h);
-        add0(h, i, name, strVal);
-        return this;
+        return Arrays.asList(Arrays.copyOf(node.values, node.count));
     }
 
     @Override
-    public MultiMap add(String name, Iterable<String> values) {
-        int h = hash(name);
-        int i = index(h);
-        for (String vstr : values) {
-            add0(h, i, name, vstr);
-        }
-        return this;
+    public List<String> getAll(CharSequence name) {
+        return getAll(name.toString());
     }
 
     @Override
-    public MultiMap addAll(MultiMap headers) {
-        for (Map.Entry<String, String> entry : headers.entries()) {
-            add(entry.getKey(), entry.getValue());
+    public void forEach(Consumer<? super Map.Entry<String, String>> action) {
+        for (Node node = head.after; node != head; node = node.after) {
+            for (int i = 0; i < node.count; i++) {
+                action.accept(new Entry(node, i));
+            }
         }
-        return this;
     }
 
     @Override
-    public MultiMap addAll(Map<String, String> map) {
-        for (Map.Entry<String, String> entry : map.entrySet()) {
-            add(entry.getKey(), entry.getValue());
-        }
-        return this;
-    }
-
-    private void add0(int h, int i, final String name, final String value) {
-        // Update the hash table.
-        MapEntry e = entries[i];
-        MapEntry newEntry;
-        entries[i] = newEntry = new MapEntry(h, name, value);
-        newEntry.next = e;
-
-        // Update the linked list.
-        newEntry.addBefore(head);
+    public List<Map.Entry<String, String>> entries() {
+        List<Map.Entry<String, String>> all = new ArrayList<>(entryCount);
+        forEach(all::add);
+        return all;
     }
 
     @Override
-    public MultiMap remove(final String name) {
-        Objects.requireNonNull(name, "name");
-        int h = hash(name);
-        int i = index(h);
-        remove0(h, i, name);
-        return this;
-    }
+    public Iterator<Map.Entry<String, String>> iterator() {
+        return new Iterator<Map.Entry<String, String>>() {
 
-    private void remove0(int h, int i, String name) {
-        MapEntry e = entries[i];
-        if (e == null) {
-            return;
-        }
+            private Node node = head.after;
+            private int index;
 
-        for (;;) {
-            if (e.hash == h && eq(name, e.key)) {
-                e.remove();
-                MapEntry next = e.next;
-                if (next != null) {
-                    entries[i] = next;
-                    e = next;
-                } else {
-                    entries[i] = null;
-                    return;
-                }
-            } else {
-                break;
+            @Override
+            public boolean hasNext() {
+                return node != head;
             }
-        }
 
-        for (;;) {
-            MapEntry next = e.next;
-            if (next == null) {
-                break;
-            }
-            if (next.hash == h && eq(name, next.key)) {
-                e.next = next.next;
-                next.remove();
-            } else {
-                e = next;
+            @Override
+            public Map.Entry<String, String> next() {
+                if (node == head) {
+                    throw new NoSuchElementException();
+                }
+                Entry entry = new Entry(node, index++);
+                if (index == node.count) {
+                    node = node.after;
+                    index = 0;
+                }
+                return entry;
             }
-        }
+        };
     }
 
     @Override
-    public MultiMap set(final String name, final String strVal) {
-        int h = hash(name);
-        int i = index(h);
-        remove0(h, i, name);
-        add0(h, i, name, strVal);
-        return this;
+    public boolean contains(String name) {
+        return get(name) != null;
     }
 
     @Override
-    public MultiMap set(final String name, final Iterable<String> values) {
-        Objects.requireNonNull(values, "values");
+    public boolean contains(CharSequence name) {
+        return contains(name.toString());
+    }
 
-        int h = hash(name);
-        int i = index(h);
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
 
-        remove0(h, i, name);
-        for (String v : values) {
-            if (v == null) {
-                break;
-            }
-            add0(h, i, name, v);
+    /**
+     * Returns the names in the order they were added
+     */
+    @Override
+    public Set<String> names() {
+        Set<String> names = new LinkedHashSet<>(Math.max(16, size * 2));
+        for (Node node = head.after; node != head; node = node.after) {
+            names.add(node.name);
         }
-
-        return this;
+        return names;
     }
 
     @Override
-    public MultiMap clear() {
-        for (int i = 0; i < entries.length; i++) {
-            entries[i] = null;
-        }
-        head.before = head.after = head;
+    public MultiMap add(String name, String value) {
+        node(name).add(value);
+        entryCount++;
         return this;
     }
 
     @Override
-    public String get(final String name) {
-        Objects.requireNonNull(name, "name");
-
-        int h = hash(name);
-        int i = index(h);
-        MapEntry e = entries[i];
-        while (e != null) {
-            if (e.hash == h && eq(name, e.key)) {
-                return e.getValue();
-            }
-
-            e = e.next;
-        }
-        return null;
+    public MultiMap add(CharSequence name, CharSequence value) {
+        return add(name.toString(), value.toString());
     }
 
     @Override
-    public List<String> getAll(final String name) {
-        Objects.requireNonNull(name, "name");
-
-        LinkedList<String> values = new LinkedList<>();
-
-        int h = hash(name);
-        int i = index(h);
-        MapEntry e = entries[i];
-        while (e != null) {
-            if (e.hash == h && eq(name, e.key)) {
-                values.addFirst(e.getValue());
+    public MultiMap add(String name, Iterable<String> values) {
+        Node node = null;
+        for (String value : values) {
+            if (node == null) {
+                node = node(name);
             }
-            e = e.next;
+            node.add(value);
+            entryCount++;
         }
-        return values;
+        return this;
     }
 
     @Override
-    public void forEach(Consumer<? super Map.Entry<String, String>> action) {
-        MapEntry e = head.after;
-        while (e != head) {
-            action.accept(e);
-            e = e.after;
+    public MultiMap add(CharSequence name, Iterable<CharSequence> values) {
+        String n = name.toString();
+        for (CharSequence value : values) {
+            add(n, value.toString());
         }
+        return this;
     }
 
     @Override
-    public List<Map.Entry<String, String>> entries() {
-        List<Map.Entry<String, String>> all = new LinkedList<>();
-
-        MapEntry e = head.after;
-        while (e != head) {
-            all.add(e);
-            e = e.after;
+    public MultiMap addAll(MultiMap map) {
+        for (Map.Entry<String, String> entry : map) {
+            add(entry.getKey(), entry.getValue());
         }
-        return all;
+        return this;
     }
 
     @Override
-    public Iterator<Map.Entry<String, String>> iterator() {
-        return entries().iterator();
+    public MultiMap addAll(Map<String, String> map) {
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+        return this;
     }
 
+    /**
+     * Replaces the values of the name, the name keeps its position
+     */
     @Override
-    public boolean contains(String name) {
-        return get(name) != null;
+    public MultiMap set(String name, String value) {
+        Node node = node(name);
+        entryCount -= node.count;
+        node.count = 0;
+        node.add(value);
+        entryCount++;
+        return this;
     }
 
     @Override
-    public boolean isEmpty() {
-        return head == head.after;
+    public MultiMap set(CharSequence name, CharSequence value) {
+        return set(name.toString(), value.toString());
     }
 
+    /**
+     * Replaces the values of the name with the values up to the first null
+     * value. The name is removed if there are no such values.
+     */
     @Override
-    public Set<String> names() {
-
-        Set<String> names = new TreeSet<>();
-
-        MapEntry e = head.after;
-        while (e != head) {
-            names.add(e.getKey());
-            e = e.after;
+    public MultiMap set(String name, Iterable<String> values) {
+        Objects.requireNonNull(values, "values");
+        Node node = find(name);
+        if (node != null) {
+            entryCount -= node.count;
+            node.count = 0;
         }
-        return names;
-    }
-
-    @Override
-    public String get(CharSequence name) {
-        return get(name.toString());
+        for (String value : values) {
+            if (value == null) {
+                break;
+            }
+            if (node == null) {
+                node = node(name);
+            }
+            node.add(value);
+            entryCount++;
+        }
+        if (node != null && node.count == 0) {
+            unlink(node);
+        }
+        return this;
     }
 
     @Override
-    public List<String> getAll(CharSequence name) {
-        return getAll(name.toString());
+    public MultiMap set(CharSequence name, Iterable<CharSequence> values) {
+        remove(name);
+        String n = name.toString();
+        for (CharSequence value : values) {
+            add(n, value.toString());
+        }
+        return this;
     }
 
     @Override
-    public boolean contains(CharSequence name) {
-        return contains(name.toString());
+    public MultiMap setAll(MultiMap map) {
+        clear();
+        return addAll(map);
     }
 
     @Override
-    public MultiMap add(CharSequence name, CharSequence value) {
-        return add(name.toString(), value.toString());
+    public MultiMap setAll(Map<String, String> map) {
+        clear();
+        return addAll(map);
     }
 
     @Override
-    public MultiMap add(CharSequence name, Iterable<CharSequence> values) {
-        String n = name.toString();
-        for (CharSequence seq : values) {
-            add(n, seq.toString());
+    public MultiMap remove(String name) {
+        Node node = find(Objects.requireNonNull(name, "name"));
+        if (node != null) {
+            entryCount -= node.count;
+            unlink(node);
         }
         return this;
     }
 
     @Override
-    public MultiMap set(CharSequence name, CharSequence value) {
-        return set(name.toString(), value.toString());
+    public MultiMap remove(CharSequence name) {
+        return remove(name.toString());
     }
 
     @Override
-    public MultiMap set(CharSequence name, Iterable<CharSequence> values) {
-        remove(name);
-        String n = name.toString();
-        for (CharSequence seq : values) {
-            add(n, seq.toString());
+    public MultiMap clear() {
+        if (table != null) {
+            Arrays.fill(table, null);
         }
+        head.before = head.after = head;
+        size = 0;
+        entryCount = 0;
         return this;
     }
 
+    /**
+     * Returns the number of distinct names
+     */
     @Override
-    public MultiMap remove(CharSequence name) {
-        return remove(name.toString());
+    public int size() {
+        return size;
     }
 
+    @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         for (Map.Entry<String, String> entry : this) {
@@ -370,46 +294,125 @@ public final class CaseSensitiveMultiMapImpl implements MultiMap {
         return sb.toString();
     }
 
-    private static final class MapEntry implements Map.Entry<String, String> {
-        final int hash;
-        final String key;
-        String value;
-        MapEntry next;
-        MapEntry before, after;
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private Node find(String name) {
+        if (table == null) {
+            return null;
+        }
+        int h = hash(name);
+        for (Node node = table[h & (table.length - 1)]; node != null; node = node.next) {
+            if (node.hash == h && node.name.equals(name)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the node of the name, a node without values is added if the name
+     * isn't present
+     */
+    private Node node(String name) {
+        Node node = find(name);
+        if (node != null) {
+            return node;
+        }
+        if (table == null) {
+            table = new Node[INITIAL_CAPACITY];
+        } else if (size >= table.length - (table.length >>> 2)) {
+            resize();
+        }
+        node = new Node(hash(name), name);
+        int bucket = node.hash & (table.length - 1);
+        node.next = table[bucket];
+        table[bucket] = node;
+        node.after = head;
+        node.before = head.before;
+        node.before.after = node;
+        head.before = node;
+        size++;
+        return node;
+    }
+
+    private void resize() {
+        Node[] resized = new Node[table.length * 2];
+        for (Node node = head.after; node != head; node = node.after) {
+            int bucket = node.hash & (resized.length - 1);
+            node.next = resized[bucket];
+            resized[bucket] = node;
+        }
+        table = resized;
+    }
+
+    private void unlink(Node node) {
+        int bucket = node.hash & (table.length - 1);
+        if (table[bucket] == node) {
+            table[bucket] = node.next;
+        } else {
+            Node previous = table[bucket];
+            while (previous.next != node) {
+                previous = previous.next;
+            }
+            previous.next = node.next;
+        }
+        node.before.after = node.after;
+        node.after.before = node.before;
+        size--;
+    }
 
-        MapEntry(int hash, String key, String value) {
+    private static final class Node {
+        final int hash;
+        final String name;
+        String[] values;
+        int count;
+        // next node in the same bucket
+        Node next;
+        // neighbours in the insertion order
+        Node before, after;
+
+        Node(int hash, String name) {
             this.hash = hash;
-            this.key = key;
-            this.value = value;
+            this.name = name;
         }
 
-        void remove() {
-            before.after = after;
-            after.before = before;
+        void add(String value) {
+            if (values == null) {
+                values = new String[INITIAL_VALUES];
+            } else if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = value;
         }
+    }
+
+    private static final class Entry implements Map.Entry<String, String> {
+        private final Node node;
+        private final int index;
 
-        void addBefore(MapEntry e) {
-            after = e;
-            before = e.before;
-            before.after = this;
-            after.before = this;
+        Entry(Node node, int index) {
+            this.node = node;
+            this.index = index;
         }
 
         @Override
         public String getKey() {
-            return key;
+            return node.name;
         }
 
         @Override
         public String getValue() {
-            return value;
+            return node.values[index];
         }
 
         @Override
         public String setValue(String value) {
             Objects.requireNonNull(value, "value");
-            String oldValue = this.value;
-            this.value = value;
+            String oldValue = node.values[index];
+            node.values[index] = value;
             return oldValue;
         }
 
@@ -418,4 +421,4 @@ public final class CaseSensitiveMultiMapImpl implements MultiMap {
             return getKey() + ": " + getValue();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,79 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClientRequest;
+
+/**
+ * Output stream writing to a chunked HttpClientRequest. The request is created
+ * on the first write, so that nothing is sent if the stream is never written
+ * to. When called outside of an event loop, the writes block while the
+ * request's write queue is full, so that the back-pressure of the connection
+ * propagates to the writer.
+ */
+public class ClientRequestOutputStream extends OutputStream {
+
+    private static final long DRAIN_TIMEOUT_MS = 1000;
+
+    private final Supplier<HttpClientRequest> requestSupplier;
+    private HttpClientRequest request;
+    private boolean closed;
+
+    public ClientRequestOutputStream(Supplier<HttpClientRequest> requestSupplier) {
+        this.requestSupplier = requestSupplier;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream has already been closed");
+        }
+        HttpClientRequest request = request();
+        request.write(Buffer.buffer().appendBytes(b, off, len));
+        awaitDrain(request);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            request().end();
+        }
+    }
+
+    private HttpClientRequest request() {
+        if (request == null) {
+            request = requestSupplier.get();
+        }
+        return request;
+    }
+
+    private void awaitDrain(HttpClientRequest request) throws InterruptedIOException {
+        if (Context.isOnEventLoopThread()) {
+            return;
+        }
+        while (request.writeQueueFull()) {
+            CountDownLatch drained = new CountDownLatch(1);
+            request.drainHandler(v -> drained.countDown());
+            try {
+                // the timeout guards against a drain which happened meanwhile
+                drained.await(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the response stream");
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Output stream completing a future once it has been closed, i.e. once the
+ * Lambda response has been fully written
+ */
+public class CompletionOutputStream extends FilterOutputStream {
+
+    private final CompletableFuture<Void> completion;
+
+    public CompletionOutputStream(OutputStream output, CompletableFuture<Void> completion) {
+        super(output);
+        this.completion = completion;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } catch (IOException e) {
+            completion.completeExceptionally(e);
+            throw e;
+        }
+        completion.complete(null);
+    }
+}
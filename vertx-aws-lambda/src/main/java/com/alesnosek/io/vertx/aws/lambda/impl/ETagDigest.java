@@ -0,0 +1,67 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Computes the entity tag of a body from its SHA-256 hash. The body can be
+ * hashed incrementally as it's written, so that it doesn't need to be
+ * buffered or read a second time.
+ */
+public final class ETagDigest {
+
+    private static final int HASH_LENGTH = 16;
+
+    private final MessageDigest digest;
+
+    public ETagDigest() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void update(Buffer data) {
+        ByteBuf buf = data.getByteBuf();
+        for (ByteBuffer nioBuffer : buf.nioBuffers()) {
+            digest.update(nioBuffer);
+        }
+    }
+
+    /**
+     * Returns the base64url encoded hash of the data, to be used as the
+     * opaque part of an entity tag. The digest is reset.
+     */
+    public String hash() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest.digest(), HASH_LENGTH));
+    }
+
+    /**
+     * Returns true if the If-None-Match header matches the given entity tag,
+     * using the weak comparison
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        String opaqueTag = opaqueTag(etag);
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || opaqueTag(tag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
@@ -0,0 +1,215 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Writes the API Gateway proxy response (headers, statusCode, isBase64Encoded
+ * and body) straight to the output stream. The body is base64 encoded or JSON
+ * escaped from the Buffer in fixed-size blocks, so neither a JsonObject nor an
+ * encoded copy of the whole body is created. For the streamed responses, only
+ * the prelude with the statusCode and the headers is written.
+ */
+public final class EnvelopeWriter {
+
+    static final int BLOCK_SIZE = 8192;
+    static final int PRELUDE_DELIMITER_LENGTH = 8;
+
+    private static final byte[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+            .getBytes();
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final OutputStream output;
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private int position;
+
+    public EnvelopeWriter(OutputStream output) {
+        this.output = output;
+    }
+
+    /**
+     * Writes the response envelope. The output stream is flushed but not
+     * closed.
+     *
+     * @param base64
+     *            whether the body is base64 encoded, otherwise it must be UTF-8
+     *            text which is written as a JSON string
+     */
+    public void write(int statusCode, Map<String, String> headers, Buffer body, boolean base64) throws IOException {
+        writeAscii("{\"headers\":");
+        writeHeaders(headers);
+        writeAscii(",\"statusCode\":");
+        writeAscii(Integer.toString(statusCode));
+        writeAscii(",\"isBase64Encoded\":");
+        writeAscii(base64 ? "true" : "false");
+        writeAscii(",\"body\":\"");
+        if (body != null) {
+            ByteBuf buf = body.getByteBuf();
+            if (base64) {
+                writeBase64(buf);
+            } else {
+                writeEscaped(buf);
+            }
+        }
+        writeAscii("\"}");
+        flush();
+    }
+
+    /**
+     * Writes the prelude of a streamed response (statusCode, headers and
+     * cookies) followed by the delimiter of eight zero bytes. The raw body
+     * bytes are expected to follow.
+     */
+    public void writePrelude(int statusCode, Map<String, String> headers, List<String> cookies)
+            throws IOException {
+        writeAscii("{\"statusCode\":");
+        writeAscii(Integer.toString(statusCode));
+        writeAscii(",\"headers\":");
+        writeHeaders(headers);
+        writeAscii(",\"cookies\":[");
+        for (int i = 0; i < cookies.size(); i++) {
+            if (i > 0) {
+                writeByte(',');
+            }
+            writeString(cookies.get(i));
+        }
+        writeAscii("]}");
+        for (int i = 0; i < PRELUDE_DELIMITER_LENGTH; i++) {
+            writeByte(0);
+        }
+        flush();
+    }
+
+    private void writeHeaders(Map<String, String> headers) throws IOException {
+        writeByte('{');
+        boolean first = true;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (!first) {
+                writeByte(',');
+            }
+            first = false;
+            writeString(header.getKey());
+            writeByte(':');
+            writeString(header.getValue());
+        }
+        writeByte('}');
+    }
+
+    private void writeBase64(ByteBuf buf) throws IOException {
+        int index = buf.readerIndex();
+        int end = buf.writerIndex();
+        while (end - index >= 3) {
+            ensureCapacity(4);
+            int bits = (buf.getUnsignedByte(index) << 16) | (buf.getUnsignedByte(index + 1) << 8)
+                    | buf.getUnsignedByte(index + 2);
+            block[position++] = BASE64[(bits >>> 18) & 0x3F];
+            block[position++] = BASE64[(bits >>> 12) & 0x3F];
+            block[position++] = BASE64[(bits >>> 6) & 0x3F];
+            block[position++] = BASE64[bits & 0x3F];
+            index += 3;
+        }
+        if (index < end) {
+            ensureCapacity(4);
+            int bits = buf.getUnsignedByte(index) << 16;
+            if (end - index == 2) {
+                bits |= buf.getUnsignedByte(index + 1) << 8;
+            }
+            block[position++] = BASE64[(bits >>> 18) & 0x3F];
+            block[position++] = BASE64[(bits >>> 12) & 0x3F];
+            block[position++] = end - index == 2 ? BASE64[(bits >>> 6) & 0x3F] : (byte) '=';
+            block[position++] = '=';
+        }
+    }
+
+    /**
+     * Escapes the UTF-8 encoded text. The multi-byte sequences are copied as
+     * they are, only the quotes, backslashes and control characters are
+     * escaped.
+     */
+    private void writeEscaped(ByteBuf buf) throws IOException {
+        int end = buf.writerIndex();
+        for (int index = buf.readerIndex(); index < end; index++) {
+            escapeByte(buf.getByte(index));
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        writeByte('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                escapeByte((byte) c);
+            } else if (c < 0x800) {
+                writeByte(0xC0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                writeByte(0xF0 | (codePoint >> 18));
+                writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+                writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+                writeByte(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                writeByte('?');
+            } else {
+                writeByte(0xE0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3F));
+                writeByte(0x80 | (c & 0x3F));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void escapeByte(byte b) throws IOException {
+        if (b == '"' || b == '\\') {
+            ensureCapacity(2);
+            block[position++] = '\\';
+            block[position++] = b;
+        } else if (b >= 0 && b < 0x20) {
+            ensureCapacity(6);
+            block[position++] = '\\';
+            block[position++] = 'u';
+            block[position++] = '0';
+            block[position++] = '0';
+            block[position++] = HEX[b >> 4];
+            block[position++] = HEX[b & 0xF];
+        } else {
+            writeByte(b);
+        }
+    }
+
+    private void writeAscii(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            writeByte(s.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == block.length) {
+            flushBlock();
+        }
+        block[position++] = (byte) b;
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (position + length > block.length) {
+            flushBlock();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        output.write(block, 0, position);
+        position = 0;
+    }
+
+    private void flush() throws IOException {
+        flushBlock();
+        output.flush();
+    }
+}
@@ -0,0 +1,346 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import io.vertx.core.MultiMap;
+
+/**
+ * Read-mostly MultiMap view over the names and values decoded from a Lambda
+ * event. No entries are copied when the view is created. The names are indexed
+ * on the first lookup only and the entry objects are created only when the
+ * view is iterated. The first modification copies the content into a regular
+ * MultiMap which is used from then on (copy-on-write).
+ */
+public final class EventMultiMap implements MultiMap {
+
+    private final List<String> entries;
+    private final boolean caseInsensitive;
+
+    // index of the first entry of each bucket, -1 if the bucket is empty
+    private int[] buckets;
+    // index of the next entry in the same bucket, -1 at the end of the chain
+    private int[] next;
+
+    private MultiMap copy;
+
+    /**
+     * @param entries
+     *            names at the even and values at the odd indexes
+     * @param caseInsensitive
+     *            whether the names are compared case insensitively (headers) or
+     *            case sensitively (query parameters)
+     */
+    public EventMultiMap(List<String> entries, boolean caseInsensitive) {
+        this.entries = entries;
+        this.caseInsensitive = caseInsensitive;
+    }
+
+    @Override
+    public String get(CharSequence name) {
+        return get(name.toString());
+    }
+
+    @Override
+    public String get(String name) {
+        if (copy != null) {
+            return copy.get(name);
+        }
+        int index = find(name);
+        return index < 0 ? null : value(index);
+    }
+
+    @Override
+    public List<String> getAll(String name) {
+        if (copy != null) {
+            return copy.getAll(name);
+        }
+        int index = find(name);
+        if (index < 0) {
+            return Collections.emptyList();
+        }
+        List<String> values = new ArrayList<>(1);
+        for (; index >= 0; index = next[index]) {
+            if (matches(name, name(index))) {
+                values.add(value(index));
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public List<String> getAll(CharSequence name) {
+        return getAll(name.toString());
+    }
+
+    @Override
+    public List<Map.Entry<String, String>> entries() {
+        if (copy != null) {
+            return copy.entries();
+        }
+        int size = entries.size() / 2;
+        List<Map.Entry<String, String>> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(new AbstractMap.SimpleImmutableEntry<>(name(i), value(i)));
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, String>> iterator() {
+        if (copy != null) {
+            return copy.iterator();
+        }
+        return new Iterator<Map.Entry<String, String>>() {
+
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return 2 * index < entries.size();
+            }
+
+            @Override
+            public Map.Entry<String, String> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<String, String> entry = new AbstractMap.SimpleImmutableEntry<>(name(index),
+                        value(index));
+                index++;
+                return entry;
+            }
+        };
+    }
+
+    @Override
+    public boolean contains(String name) {
+        if (copy != null) {
+            return copy.contains(name);
+        }
+        return find(name) >= 0;
+    }
+
+    @Override
+    public boolean contains(CharSequence name) {
+        return contains(name.toString());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (copy != null) {
+            return copy.isEmpty();
+        }
+        return entries.isEmpty();
+    }
+
+    @Override
+    public Set<String> names() {
+        if (copy != null) {
+            return copy.names();
+        }
+        Set<String> names = caseInsensitive ? new TreeSet<>(String.CASE_INSENSITIVE_ORDER) : new LinkedHashSet<>();
+        int size = entries.size() / 2;
+        for (int i = 0; i < size; i++) {
+            names.add(name(i));
+        }
+        return names;
+    }
+
+    @Override
+    public MultiMap add(String name, String value) {
+        copy().add(name, value);
+        return this;
+    }
+
+    @Override
+    public MultiMap add(CharSequence name, CharSequence value) {
+        copy().add(name, value);
+        return this;
+    }
+
+    @Override
+    public MultiMap add(String name, Iterable<String> values) {
+        copy().add(name, values);
+        return this;
+    }
+
+    @Override
+    public MultiMap add(CharSequence name, Iterable<CharSequence> values) {
+        copy().add(name, values);
+        return this;
+    }
+
+    @Override
+    public MultiMap addAll(MultiMap map) {
+        copy().addAll(map);
+        return this;
+    }
+
+    @Override
+    public MultiMap addAll(Map<String, String> map) {
+        copy().addAll(map);
+        return this;
+    }
+
+    @Override
+    public MultiMap set(String name, String value) {
+        copy().set(name, value);
+        return this;
+    }
+
+    @Override
+    public MultiMap set(CharSequence name, CharSequence value) {
+        copy().set(name, value);
+        return this;
+    }
+
+    @Override
+    public MultiMap set(String name, Iterable<String> values) {
+        copy().set(name, values);
+        return this;
+    }
+
+    @Override
+    public MultiMap set(CharSequence name, Iterable<CharSequence> values) {
+        copy().set(name, values);
+        return this;
+    }
+
+    @Override
+    public MultiMap setAll(MultiMap map) {
+        copy().setAll(map);
+        return this;
+    }
+
+    @Override
+    public MultiMap setAll(Map<String, String> map) {
+        copy().setAll(map);
+        return this;
+    }
+
+    @Override
+    public MultiMap remove(String name) {
+        copy().remove(name);
+        return this;
+    }
+
+    @Override
+    public MultiMap remove(CharSequence name) {
+        copy().remove(name);
+        return this;
+    }
+
+    @Override
+    public MultiMap clear() {
+        copy().clear();
+        return this;
+    }
+
+    /**
+     * Returns the number of distinct names, like the other MultiMap
+     * implementations do
+     */
+    @Override
+    public int size() {
+        if (copy != null) {
+            return copy.size();
+        }
+        int count = entries.size() / 2;
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (find(name(i)) == i) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : this) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private String name(int index) {
+        return entries.get(2 * index);
+    }
+
+    private String value(int index) {
+        return entries.get(2 * index + 1);
+    }
+
+    private MultiMap copy() {
+        if (copy == null) {
+            MultiMap map = caseInsensitive ? MultiMap.caseInsensitiveMultiMap() : new CaseSensitiveMultiMapImpl();
+            int size = entries.size() / 2;
+            for (int i = 0; i < size; i++) {
+                map.add(name(i), value(i));
+            }
+            copy = map;
+            buckets = null;
+            next = null;
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the index of the first entry with the given name, or -1
+     */
+    private int find(String name) {
+        if (entries.isEmpty()) {
+            return -1;
+        }
+        if (buckets == null) {
+            buildIndex();
+        }
+        for (int index = buckets[hash(name) & (buckets.length - 1)]; index >= 0; index = next[index]) {
+            if (matches(name, name(index))) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private void buildIndex() {
+        int size = entries.size() / 2;
+        int capacity = Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1;
+        buckets = new int[capacity];
+        next = new int[size];
+        Arrays.fill(buckets, -1);
+        // insert in the reverse order so that the chains keep the original order
+        for (int i = size - 1; i >= 0; i--) {
+            int bucket = hash(name(i)) & (capacity - 1);
+            next[i] = buckets[bucket];
+            buckets[bucket] = i;
+        }
+    }
+
+    private int hash(String name) {
+        int h = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (caseInsensitive && c >= 'A' && c <= 'Z') {
+                c += 32;
+            }
+            h = 31 * h + c;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private boolean matches(String name, String other) {
+        return caseInsensitive ? name.equalsIgnoreCase(other) : name.equals(other);
+    }
+}
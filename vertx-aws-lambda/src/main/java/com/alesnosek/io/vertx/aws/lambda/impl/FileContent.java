@@ -0,0 +1,59 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Provides the content of a file region as a Buffer. Large regions are memory
+ * mapped, so that the response encoder reads them block by block directly
+ * from the page cache instead of the file being loaded onto the heap. Small
+ * regions are read with a single FileChannel read which is cheaper than a
+ * mapping.
+ */
+public final class FileContent {
+
+    /**
+     * Regions smaller than this are read onto the heap instead of being mapped
+     */
+    static final int MAP_THRESHOLD = 64 * 1024;
+
+    private FileContent() {
+    }
+
+    /**
+     * Returns the content of the file region. The length is truncated at the
+     * end of the file.
+     *
+     * @throws IOException
+     *             if the file cannot be read or the region is too large
+     */
+    public static Buffer read(File file, long offset, long length) throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Offset and length must not be negative");
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long size = Math.max(0, Math.min(length, channel.size() - offset));
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File region is too large: " + size);
+            }
+            if (size >= MAP_THRESHOLD) {
+                // the mapping stays valid after the channel has been closed
+                return Buffer.buffer(Unpooled.wrappedBuffer(channel.map(FileChannel.MapMode.READ_ONLY, offset, size)));
+            }
+            ByteBuffer data = ByteBuffer.allocate((int) size);
+            while (data.hasRemaining()) {
+                if (channel.read(data, offset + data.position()) < 0) {
+                    break;
+                }
+            }
+            data.flip();
+            return Buffer.buffer(Unpooled.wrappedBuffer(data));
+        }
+    }
+}
@@ -1,12 +1,11 @@
 package com.alesnosek.io.vertx.aws.lambda.impl;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.util.Map;
+import java.util.List;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.security.cert.X509Certificate;
 
+import io.vertx.core.Context;
 import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
 import io.vertx.core.buffer.Buffer;
@@ -18,17 +17,12 @@ import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.http.HttpVersion;
 import io.vertx.core.http.ServerWebSocket;
-import io.vertx.core.json.JsonObject;
-import io.vertx.core.logging.Logger;
-import io.vertx.core.logging.LoggerFactory;
 import io.vertx.core.net.NetSocket;
 import io.vertx.core.net.SocketAddress;
 
 public class HttpServerRequestImpl implements HttpServerRequest {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(HttpServerRequestImpl.class);
-
-    private final JsonObject request;
+    private final LambdaEvent request;
     private final HttpServerResponse response;
 
     private String uri;
@@ -45,6 +39,16 @@ public class HttpServerRequestImpl implements HttpServerRequest {
 
     private boolean ended;
 
+    private long deadline = Long.MAX_VALUE;
+
+    private Context context;
+    private int chunkSize = BodyDecoder.DEFAULT_CHUNK_SIZE;
+    private BodyDecoder bodyDecoder;
+    private volatile boolean paused;
+    // the delivery state is confined to the context
+    private boolean dataPending;
+    private boolean endPending;
+
     private String localHost;
     private int localPort = 0;
 
@@ -54,7 +58,7 @@ public class HttpServerRequestImpl implements HttpServerRequest {
     private SocketAddress localAddress;
     private SocketAddress remoteAddress;
 
-    public HttpServerRequestImpl(String localHost, int localPort, JsonObject request, HttpServerResponse response) {
+    public HttpServerRequestImpl(String localHost, int localPort, LambdaEvent request, HttpServerResponse response) {
         this.localHost = localHost;
         this.localPort = localPort;
         this.request = request;
@@ -75,11 +79,20 @@ public class HttpServerRequestImpl implements HttpServerRequest {
 
     @Override
     public HttpServerRequest pause() {
+        paused = true;
         return this;
     }
 
     @Override
     public HttpServerRequest resume() {
+        if (paused) {
+            paused = false;
+            if (context != null) {
+                context.runOnContext(v -> deliverData());
+            } else {
+                deliverData();
+            }
+        }
         return this;
     }
 
@@ -97,12 +110,12 @@ public class HttpServerRequestImpl implements HttpServerRequest {
 
     @Override
     public HttpMethod method() {
-        return HttpMethod.valueOf(request.getString("httpMethod"));
+        return HttpMethod.valueOf(request.httpMethod());
     }
 
     @Override
     public String rawMethod() {
-        return request.getString("httpMethod");
+        return request.httpMethod();
     }
 
     @Override
@@ -118,33 +131,39 @@ public class HttpServerRequestImpl implements HttpServerRequest {
     @Override
     public String uri() {
         if (uri == null) {
-            String path = path().equals("/") ? "" : path();
-            uri = scheme() + "://" + host() + ":" + localPort + path;
-            if (query().length() > 0) {
-                uri = uri + "?" + query();
-            };
+            String path = request.rawPath() != null ? request.rawPath() : path();
+            if (path == null || path.equals("/")) {
+                path = "";
+            }
+            String query = query();
+            String host = host();
+            StringBuilder sb = new StringBuilder(scheme().length() + host.length() + path.length() + query.length() + 16);
+            sb.append(scheme()).append("://").append(host).append(':').append(localPort).append(path);
+            if (query.length() > 0) {
+                sb.append('?').append(query);
+            }
+            uri = sb.toString();
         }
         return uri;
     }
 
     @Override
     public String path() {
-        return request.getString("path");
+        return request.path() != null ? request.path() : request.rawPath();
     }
 
+    /**
+     * Returns the query string as received by the event source. If the event
+     * source doesn't provide it, the query string is built from the query
+     * parameters.
+     */
     @Override
     public String query() {
         if (query == null) {
-            StringBuilder queryBuilder = new StringBuilder();
-            for (Map.Entry<String, String> param : params()) {
-                if (queryBuilder.length() > 0) {
-                    queryBuilder.append("&");
-                }
-                queryBuilder.append(urlEncode(param.getKey()));
-                queryBuilder.append("=");
-                queryBuilder.append(urlEncode(param.getValue()));
+            query = request.rawQueryString();
+            if (query == null) {
+                query = buildQuery(request.queryStringParameters());
             }
-            query = queryBuilder.toString();
         }
         return query;
     }
@@ -162,13 +181,7 @@ public class HttpServerRequestImpl implements HttpServerRequest {
     @Override
     public MultiMap headers() {
         if (headers == null) {
-            headers = MultiMap.caseInsensitiveMultiMap();
-            JsonObject requestHeaders = request.getJsonObject("headers");
-            if (requestHeaders != null) {
-                for (Map.Entry<String, Object> entry : requestHeaders) {
-                    headers.add(entry.getKey(), entry.getValue().toString());
-                }
-            }
+            headers = new EventMultiMap(request.headers(), true);
         }
         return headers;
     }
@@ -186,13 +199,7 @@ public class HttpServerRequestImpl implements HttpServerRequest {
     @Override
     public MultiMap params() {
         if (params == null) {
-            params = new CaseSensitiveMultiMapImpl();
-            JsonObject queryParams = request.getJsonObject("queryStringParameters");
-            if (queryParams != null) {
-                for (Map.Entry<String, Object> entry : queryParams) {
-                    params.add(entry.getKey(), entry.getValue().toString());
-                }
-            }
+            params = new EventMultiMap(request.queryStringParameters(), false);
         }
         return params;
     }
@@ -311,45 +318,116 @@ public class HttpServerRequestImpl implements HttpServerRequest {
         return null;
     }
 
-    public void handleData() {
-        Buffer data = null;
-        if (request.getBoolean("isBase64Encoded")) {
-            byte[] body = request.getBinary("body");
-            if (body != null) {
-                data = Buffer.buffer(body);
-            }
-        } else {
-            String body = request.getString("body");
-            if (body != null) {
-                data = Buffer.buffer(body);
-            }
-        }
+    /**
+     * Sets the time (in milliseconds since the epoch) when the Lambda
+     * invocation times out
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Returns the time (in milliseconds since the epoch) when the Lambda
+     * invocation times out, or Long.MAX_VALUE if there is no deadline
+     */
+    public long deadline() {
+        return deadline;
+    }
 
-        if (data != null && dataHandler != null) {
-            dataHandler.handle(data);
+    /**
+     * Returns the time in milliseconds remaining until the Lambda invocation
+     * times out, or Long.MAX_VALUE if there is no deadline
+     */
+    public long remainingTimeMillis() {
+        if (deadline == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
         }
+        return Math.max(0, deadline - System.currentTimeMillis());
+    }
+
+    public void handleData() {
+        // while paused the body is kept undecoded, the handlers might be set
+        // before the request is resumed
+        dataPending = true;
+        deliverData();
     }
 
     public void handleEnd() {
+        if (paused || dataPending || (bodyDecoder != null && bodyDecoder.hasNext())) {
+            // the end is signalled after the rest of the body has been delivered
+            endPending = true;
+            return;
+        }
         ended = true;
         if (endHandler != null) {
             endHandler.handle(null);
         }
     }
 
+    /**
+     * Sets the Vert.x context on which the request is handled. The body is
+     * delivered on this context only, including after the request has been
+     * resumed from another thread.
+     */
+    public void setContext(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Sets the maximum size of the body chunks passed to the data handler
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    private void deliverData() {
+        if (dataPending && !paused) {
+            dataPending = false;
+            // the body is decoded only if somebody is interested in it
+            if (dataHandler != null) {
+                bodyDecoder = new BodyDecoder(request.body(), request.isBase64Encoded(), chunkSize);
+            }
+        }
+        if (bodyDecoder == null) {
+            // the data hasn't been handed over yet or nobody is interested in it
+            deliverEnd();
+            return;
+        }
+        while (!paused && bodyDecoder.hasNext()) {
+            dataHandler.handle(bodyDecoder.next());
+        }
+        deliverEnd();
+    }
+
+    private void deliverEnd() {
+        if (endPending && !paused && !dataPending && (bodyDecoder == null || !bodyDecoder.hasNext())) {
+            endPending = false;
+            handleEnd();
+        }
+    }
+
     private void checkEnded() {
         if (ended) {
             throw new IllegalStateException("Request has already been read");
         }
     }
 
-    private String urlEncode(String param) {
-        String res = "";
-        try {
-            res = URLEncoder.encode(param, "UTF-8").replaceAll("\\+", "%20");
-        } catch (UnsupportedEncodingException e) {
-            LOGGER.error("Failed to encode query parameter " + param, e);
+    private static String buildQuery(List<String> queryParams) {
+        if (queryParams.isEmpty()) {
+            return "";
+        }
+        int length = 0;
+        for (String s : queryParams) {
+            length += s.length() + 1;
+        }
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < queryParams.size(); i += 2) {
+            if (i > 0) {
+                sb.append('&');
+            }
+            UriEncoder.appendEncoded(sb, queryParams.get(i)).append('=');
+            UriEncoder.appendEncoded(sb, queryParams.get(i + 1));
         }
-        return res;
+        return sb.toString();
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,24 @@
 package com.alesnosek.io.vertx.aws.lambda.impl;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import com.alesnosek.io.vertx.aws.lambda.ResponseOffload;
+import com.alesnosek.io.vertx.aws.lambda.StaticAssetCache;
+import com.alesnosek.io.vertx.aws.lambda.impl.ByteRanges.ByteRange;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
@@ -12,10 +26,30 @@ import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerResponse;
-import io.vertx.core.json.JsonObject;
+import io.vertx.core.http.impl.MimeMapping;
+import io.vertx.core.impl.VertxInternal;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 
 public class HttpServerResponseImpl implements HttpServerResponse {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpServerResponseImpl.class);
+
+    private static final String VARY = "Vary";
+    private static final String SET_COOKIE = "Set-Cookie";
+    private static final String RANGE = "Range";
+    private static final String IF_RANGE = "If-Range";
+    private static final String BYTES = "bytes";
+    private static final int NOT_MODIFIED = HttpResponseStatus.NOT_MODIFIED.code();
+
+    /**
+     * Headers describing the body which are removed when redirecting to the
+     * offloaded body
+     */
+    private static final CharSequence[] ENTITY_HEADERS = { HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH,
+            HttpHeaders.CONTENT_ENCODING, "Content-Disposition", HttpHeaders.CONTENT_RANGE,
+            HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED };
+
     private final OutputStream output;
 
     private boolean headWritten;
@@ -26,8 +60,29 @@ public class HttpServerResponseImpl implements HttpServerResponse {
     private Handler<Void> bodyEndHandler;
     private boolean chunked;
     private boolean closed;
+    // a timeout or error response has been written in place of this one
+    private boolean aborted;
     private MultiMap headers;
     private MultiMap trailers;
+    private MediaTypePolicy mediaTypePolicy = MediaTypePolicy.ALL_BINARY;
+    private ResponseCompressor compressor = ResponseCompressor.DISABLED;
+    private MultiMap requestHeaders;
+    private StaticAssetCache assetCache;
+    private ETagDigest etagDigest;
+    private File spillDirectory;
+    private int spillThreshold = SpillBuffer.DEFAULT_SPILL_THRESHOLD;
+    private SpillBuffer spillBuffer;
+    private StreamingWriter spillWriter;
+    private int writeQueueMaxSize = StreamingWriter.DEFAULT_WRITE_QUEUE_MAX_SIZE;
+    private Handler<Void> drainHandler;
+    private boolean spillFailed;
+    // the heap body has been discarded, it has grown over the payload limit
+    private boolean bodyDiscarded;
+    private ResponseOffload offload;
+    private Context context;
+    private StreamingWriter streamingWriter;
+    // counted as written, wherever the body is stored
+    private long bytesWritten;
     int statusCode = 200;
     String statusMessage = "OK";
 
@@ -37,9 +92,24 @@ public class HttpServerResponseImpl implements HttpServerResponse {
         this.output = output;
     }
 
+    /**
+     * Returns true if the written data which is still queued on the heap
+     * exceeds the maximum size of the write queue. In the streaming mode, the
+     * data waiting to be written to the output stream is counted; otherwise
+     * the data waiting to be spilled to the temporary file. A body which is
+     * kept on the heap because the spilling is disabled or has failed is never
+     * reported as full, it cannot be drained. Instead, it's discarded once it
+     * has grown over the Lambda payload limit and a 500 response is returned.
+     */
     @Override
-    public boolean writeQueueFull() {
+    public synchronized boolean writeQueueFull() {
         checkWritten();
+        if (streamingWriter != null) {
+            return streamingWriter.writeQueueFull();
+        }
+        if (spillWriter != null) {
+            return spillWriter.writeQueueFull();
+        }
         return false;
     }
 
@@ -51,14 +121,28 @@ public class HttpServerResponseImpl implements HttpServerResponse {
     }
 
     @Override
-    public HttpServerResponse setWriteQueueMaxSize(int maxSize) {
+    public synchronized HttpServerResponse setWriteQueueMaxSize(int maxSize) {
         checkWritten();
+        writeQueueMaxSize = maxSize;
+        if (streamingWriter != null) {
+            streamingWriter.setWriteQueueMaxSize(maxSize);
+        }
+        if (spillWriter != null) {
+            spillWriter.setWriteQueueMaxSize(maxSize);
+        }
         return this;
     }
 
     @Override
-    public HttpServerResponse drainHandler(Handler<Void> handler) {
+    public synchronized HttpServerResponse drainHandler(Handler<Void> handler) {
         checkWritten();
+        drainHandler = handler;
+        if (streamingWriter != null) {
+            streamingWriter.drainHandler(handler);
+        }
+        if (spillWriter != null) {
+            spillWriter.drainHandler(handler);
+        }
         return this;
     }
 
@@ -191,7 +275,10 @@ public class HttpServerResponseImpl implements HttpServerResponse {
     }
 
     @Override
-    public HttpServerResponse write(Buffer data) {
+    public synchronized HttpServerResponse write(Buffer data) {
+        if (aborted) {
+            return this;
+        }
         checkWritten();
         if (!headWritten && !chunked && !contentLengthSet()) {
             throw new IllegalStateException(
@@ -201,8 +288,19 @@ public class HttpServerResponseImpl implements HttpServerResponse {
 
         if (!headWritten) {
             prepareHeaders();
+            if (streamingWriter != null) {
+                writePrelude();
+            }
+        }
+        if (streamingWriter != null) {
+            streamingWriter.write(data);
+            bytesWritten += data.length();
+        } else {
+            if (etagDigest != null) {
+                etagDigest.update(data);
+            }
+            appendBody(data);
         }
-        body().appendBuffer(data);
         return this;
     }
 
@@ -222,21 +320,58 @@ public class HttpServerResponseImpl implements HttpServerResponse {
     }
 
     @Override
-    public void end(Buffer chunk) {
-        checkWritten();
-        if (!chunked && !contentLengthSet()) {
-            headers().set(HttpHeaders.CONTENT_LENGTH, String.valueOf(chunk.length()));
-        }
-        body().appendBuffer(chunk);
-        if (!headWritten) {
-            prepareHeaders();
+    public synchronized void end(Buffer chunk) {
+        if (aborted) {
+            return;
         }
+        checkWritten();
+        if (streamingWriter != null) {
+            endStreaming(chunk);
+        } else {
+            if (etagDigest != null) {
+                etagDigest.update(chunk);
+                applyETag();
+            }
+            if (!chunked && !contentLengthSet() && statusCode != NOT_MODIFIED) {
+                headers().set(HttpHeaders.CONTENT_LENGTH, String.valueOf(chunk.length()));
+            }
+            if (statusCode == NOT_MODIFIED) {
+                body = null;
+                discardSpill();
+            } else if (body == null && spillWriter == null && !bodyDiscarded) {
+                // no copy, the chunk is encoded before this method returns
+                body = chunk;
+                bytesWritten += chunk.length();
+            } else {
+                appendBody(chunk);
+            }
+            if (!headWritten) {
+                prepareHeaders();
+            }
 
-        outputResponse();
+            if (spillWriter != null) {
+                // the envelope is written once the queued data has been spilled,
+                // the end handlers are called after it as for a heap body
+                spillWriter.flush(v -> {
+                    synchronized (this) {
+                        mapSpilledBody();
+                        outputResponse();
+                    }
+                    callEndHandlers();
+                });
+                closed = true;
+                written = true;
+                return;
+            }
+            outputResponse();
+        }
 
         closed = true;
         written = true;
+        callEndHandlers();
+    }
 
+    private void callEndHandlers() {
         if (bodyEndHandler != null) {
             bodyEndHandler.handle(null);
         }
@@ -252,13 +387,15 @@ public class HttpServerResponseImpl implements HttpServerResponse {
 
     @Override
     public HttpServerResponse sendFile(String filename, long offset, long length) {
-        throw new java.lang.UnsupportedOperationException("Not supported yet.");
+        doSendFile(filename, offset, length, null);
+        return this;
     }
 
     @Override
     public HttpServerResponse sendFile(String filename, long offset, long length,
             Handler<AsyncResult<Void>> resultHandler) {
-        throw new java.lang.UnsupportedOperationException("Not supported yet.");
+        doSendFile(filename, offset, length, resultHandler);
+        return this;
     }
 
     @Override
@@ -294,8 +431,8 @@ public class HttpServerResponseImpl implements HttpServerResponse {
     }
 
     @Override
-    public long bytesWritten() {
-        return body().length();
+    public synchronized long bytesWritten() {
+        return bytesWritten;
     }
 
     @Override
@@ -337,6 +474,166 @@ public class HttpServerResponseImpl implements HttpServerResponse {
         return this;
     }
 
+    /**
+     * Writes a 504 response unless the response has already been ended. The
+     * data written by the request handler afterwards is discarded. If a
+     * streamed response has already sent its status, the body is cut off
+     * instead.
+     *
+     * @return true if the timeout response has been written
+     */
+    public boolean timeout() {
+        return abort(HttpResponseStatus.GATEWAY_TIMEOUT);
+    }
+
+    /**
+     * Writes a 500 response after the request handler has failed, unless the
+     * response has already been ended. Like with {@link #timeout()}, the data
+     * written afterwards is discarded.
+     *
+     * @return true if the error response has been written
+     */
+    public boolean fail() {
+        return abort(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    private synchronized boolean abort(HttpResponseStatus status) {
+        if (written) {
+            return false;
+        }
+        aborted = true;
+        if (streamingWriter != null && headWritten) {
+            // the status has already been sent, the body is cut off
+            streamingWriter.close();
+        } else {
+            writeAbortResponse(status);
+        }
+
+        closed = true;
+        written = true;
+        callEndHandlers();
+        return true;
+    }
+
+    private void writeAbortResponse(HttpResponseStatus status) {
+        statusCode = status.code();
+        statusMessage = status.reasonPhrase();
+        chunked = false;
+        headers = null;
+        trailers = null;
+        body = Buffer.buffer(statusMessage);
+        discardSpill();
+        headers().set(HttpHeaders.CONTENT_LENGTH, String.valueOf(body.length()));
+
+        if (streamingWriter != null) {
+            writePrelude();
+            streamingWriter.write(body);
+            streamingWriter.close();
+        } else {
+            outputResponse();
+        }
+    }
+
+    public boolean timedOut() {
+        return aborted && statusCode == HttpResponseStatus.GATEWAY_TIMEOUT.code();
+    }
+
+    /**
+     * Sets the policy deciding whether the body is sent as text or base64
+     * encoded, all the bodies are base64 encoded by default
+     */
+    public void setMediaTypePolicy(MediaTypePolicy mediaTypePolicy) {
+        this.mediaTypePolicy = mediaTypePolicy;
+    }
+
+    /**
+     * Switches the response to the streaming mode. The status code and the
+     * headers are sent as a prelude before the first chunk of the body, then
+     * every chunk is written to the output stream as raw bytes when written to
+     * the response. The chunks are written on a worker thread of the
+     * response's context; if the output stream doesn't keep up, the write
+     * queue becomes full. The streamed body is neither compressed nor base64 encoded.
+     */
+    public void setStreaming(boolean streaming) {
+        if (streaming) {
+            streamingWriter = new StreamingWriter(context, output);
+            streamingWriter.setWriteQueueMaxSize(writeQueueMaxSize);
+            streamingWriter.drainHandler(drainHandler);
+            streamingWriter.exceptionHandler(this::handleException);
+        } else {
+            streamingWriter = null;
+        }
+    }
+
+    public boolean isStreaming() {
+        return streamingWriter != null;
+    }
+
+    /**
+     * Sets the Vert.x context used to write the streamed chunks and to resolve
+     * the files sent by {@link #sendFile(String, long, long)}
+     */
+    public void setContext(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Sets the compressor of the response body. By default, the body is
+     * compressed only if it would exceed the Lambda payload limit otherwise.
+     */
+    public void setCompressor(ResponseCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    /**
+     * Sets the headers of the request which select the content of the
+     * response, like Accept-Encoding. The body isn't compressed if they're not
+     * set.
+     */
+    public void setRequestHeaders(MultiMap requestHeaders) {
+        this.requestHeaders = requestHeaders;
+    }
+
+    /**
+     * Enables the automatic ETag of the response. The body is hashed as it's
+     * written and, unless the ETag header has been set by the application, a
+     * weak ETag is added when the response is ended. If the request's
+     * If-None-Match header matches the ETag, an empty 304 response is sent
+     * instead of the body. Only the responses with status 200 are affected,
+     * the streamed responses never.
+     */
+    public void setAutoETag(boolean autoETag) {
+        etagDigest = autoETag ? new ETagDigest() : null;
+    }
+
+    /**
+     * Enables spilling of the body to a temporary file in the given directory
+     * once it grows over the threshold in bytes. The spilled body is memory
+     * mapped when the response is ended, so that it doesn't occupy the heap.
+     * The body is always kept on the heap if the directory is null.
+     */
+    public void setSpill(File spillDirectory, int spillThreshold) {
+        this.spillDirectory = spillDirectory;
+        this.spillThreshold = spillThreshold;
+    }
+
+    /**
+     * Sets the offload of the bodies which would exceed the Lambda payload
+     * limit. The client is redirected to the offloaded body with a 303
+     * response. Without an offload, the body is sent regardless of the limit.
+     */
+    public void setResponseOffload(ResponseOffload offload) {
+        this.offload = offload;
+    }
+
+    /**
+     * Sets the cache of the files sent by {@link #sendFile(String, long, long)},
+     * the files are read on every call if it's not set
+     */
+    public void setStaticAssetCache(StaticAssetCache assetCache) {
+        this.assetCache = assetCache;
+    }
+
     void handleException(Throwable t) {
         if (exceptionHandler != null) {
             exceptionHandler.handle(t);
@@ -344,7 +641,7 @@ public class HttpServerResponseImpl implements HttpServerResponse {
     }
 
     private void checkWritten() {
-        if (written) {
+        if (written && !aborted) {
             throw new IllegalStateException("Response has already been written");
         }
     }
@@ -371,38 +668,437 @@ public class HttpServerResponseImpl implements HttpServerResponse {
     }
 
     private void outputResponse() {
-        JsonObject outputJson = new JsonObject();
+        if (bodyDiscarded && !aborted) {
+            handleException(new IOException("Response body exceeds the Lambda payload limit"));
+            setStatus(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            headers = null;
+            chunked = false;
+            body = Buffer.buffer();
+        }
+        // the encoded content is always binary
+        boolean text = !headers().contains(HttpHeaders.CONTENT_ENCODING)
+                && mediaTypePolicy.isText(headers().get(HttpHeaders.CONTENT_TYPE), body());
+        if (!aborted) {
+            compressBody(!text);
+        }
+        boolean base64 = !text || headers().contains(HttpHeaders.CONTENT_ENCODING);
+        if (!aborted && offload != null && statusCode == HttpResponseStatus.OK.code()
+                && exceedsPayloadLimit(body().length(), base64)) {
+            offloadBody();
+            return;
+        }
+        writeEnvelope(base64);
+    }
+
+    private void writeEnvelope(boolean base64) {
+        try {
+            new EnvelopeWriter(output).write(statusCode, outputHeaders(false), body(), base64);
+        } catch (IOException e) {
+            handleException(e);
+        }
+
+        try {
+            output.close();
+        } catch (IOException e) {
+            handleException(e);
+        }
+    }
+
+    /**
+     * Stores the body with the offload and redirects the client to it. The
+     * envelope is written once the offload has completed.
+     */
+    private void offloadBody() {
+        offload.offload(body, headers(), ar -> {
+            synchronized (this) {
+                if (ar.succeeded()) {
+                    setStatus(HttpResponseStatus.SEE_OTHER);
+                    for (CharSequence header : ENTITY_HEADERS) {
+                        headers().remove(header);
+                    }
+                    headers().set(HttpHeaders.LOCATION, ar.result());
+                } else {
+                    handleException(ar.cause());
+                    setStatus(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                    headers = null;
+                }
+                chunked = false;
+                body = Buffer.buffer();
+                headers().set(HttpHeaders.CONTENT_LENGTH, "0");
+                writeEnvelope(false);
+            }
+        });
+    }
+
+    private static boolean exceedsPayloadLimit(int size, boolean base64) {
+        long encodedSize = base64 ? (size + 2L) / 3 * 4 : size;
+        return encodedSize > ResponseCompressor.PAYLOAD_LIMIT;
+    }
+
+    /**
+     * Appends the data to the body. Once the body has grown over the spill
+     * threshold, it's moved to a temporary file and the following data is
+     * queued to be appended to the file on a worker thread. If the body can't
+     * be spilled nor offloaded, it's discarded once it has grown over the
+     * Lambda payload limit and a 500 response is returned instead.
+     */
+    private void appendBody(Buffer data) {
+        bytesWritten += data.length();
+        if (spillWriter == null && spillDirectory != null && !spillFailed
+                && (body != null ? (long) body.length() : 0) + data.length() > spillThreshold) {
+            try {
+                spillBuffer = new SpillBuffer(spillDirectory);
+            } catch (IOException e) {
+                // keep the body on the heap
+                handleException(e);
+                spillFailed = true;
+            }
+            if (spillBuffer != null) {
+                spillWriter = new StreamingWriter(context, spillBuffer);
+                spillWriter.setWriteQueueMaxSize(writeQueueMaxSize);
+                spillWriter.drainHandler(drainHandler);
+                spillWriter.exceptionHandler(t -> {
+                    synchronized (this) {
+                        spillFailed = true;
+                    }
+                    handleException(t);
+                });
+                if (body != null) {
+                    spillWriter.write(body);
+                    body = null;
+                }
+            }
+        }
+        if (spillWriter != null) {
+            spillWriter.write(data);
+        } else if (!bodyDiscarded) {
+            body().appendBuffer(data);
+            if (offload == null && (spillDirectory == null || spillFailed)
+                    && body.length() > ResponseCompressor.PAYLOAD_LIMIT) {
+                // the heap is released instead of growing until the end
+                bodyDiscarded = true;
+                body = null;
+            }
+        }
+    }
+
+    /**
+     * Replaces the spilled body by its memory mapped content
+     */
+    private void mapSpilledBody() {
+        try {
+            if (spillFailed) {
+                throw new IOException("Failed to spill the response body");
+            }
+            body = spillBuffer.toBuffer();
+        } catch (IOException e) {
+            handleException(e);
+            setStatus(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            headers = null;
+            chunked = false;
+            body = Buffer.buffer();
+        } finally {
+            discardSpill();
+        }
+    }
+
+    private void discardSpill() {
+        if (spillWriter != null) {
+            // closed after the queued data
+            spillWriter.close();
+            spillWriter = null;
+            spillBuffer = null;
+        }
+    }
+
+    private void writePrelude() {
+        ByteBuf prelude = Unpooled.buffer(256);
+        try {
+            new EnvelopeWriter(new ByteBufOutputStream(prelude)).writePrelude(statusCode, outputHeaders(true),
+                    headers().getAll(SET_COOKIE));
+        } catch (IOException e) {
+            handleException(e);
+        }
+        streamingWriter.write(Buffer.buffer(prelude));
+    }
 
-        JsonObject outputHeaders = new JsonObject();
+    private void endStreaming(Buffer chunk) {
+        if (!headWritten) {
+            if (!chunked && !contentLengthSet()) {
+                headers().set(HttpHeaders.CONTENT_LENGTH, String.valueOf(chunk.length()));
+            }
+            prepareHeaders();
+            writePrelude();
+        }
+        if (chunk.length() > 0) {
+            streamingWriter.write(chunk);
+            bytesWritten += chunk.length();
+        }
+        streamingWriter.close();
+    }
+
+    /**
+     * Returns the headers to be sent, a header repeated with several values is
+     * sent with its last value
+     *
+     * @param streaming
+     *            whether the cookies are sent separately from the headers
+     */
+    private Map<String, String> outputHeaders(boolean streaming) {
+        Map<String, String> outputHeaders = new LinkedHashMap<>();
         if (headers != null) {
             for (Map.Entry<String, String> header : headers) {
-                outputHeaders.put(header.getKey(), header.getValue());
+                if (!streaming || !header.getKey().equalsIgnoreCase(SET_COOKIE)) {
+                    outputHeaders.put(header.getKey(), header.getValue());
+                }
             }
         }
-        if (chunked) {
+        if (chunked && !streaming) {
             if (trailers != null) {
                 for (Map.Entry<String, String> trailer : trailers) {
                     outputHeaders.put(trailer.getKey(), trailer.getValue());
                 }
             }
-            outputHeaders.put(HttpHeaders.CONTENT_LENGTH.toString(), String.valueOf(body.length()));
+            outputHeaders.put(HttpHeaders.CONTENT_LENGTH.toString(), String.valueOf(body().length()));
         }
+        return outputHeaders;
+    }
 
-        outputJson.put("headers", outputHeaders);
-        outputJson.put("statusCode", statusCode);
-        outputJson.put("isBase64Encoded", true);
-        outputJson.put("body", body().getBytes());
+    private synchronized void doSendFile(String filename, long offset, long length,
+            Handler<AsyncResult<Void>> resultHandler) {
+        if (aborted) {
+            if (resultHandler != null) {
+                resultHandler.handle(Future.failedFuture("Response has been aborted"));
+            }
+            return;
+        }
+        checkWritten();
+        if (headWritten) {
+            throw new IllegalStateException("Head already written");
+        }
+        File file = resolveFile(filename);
+        if (!file.isFile()) {
+            if (resultHandler != null) {
+                resultHandler.handle(Future.failedFuture(new FileNotFoundException(filename)));
+            } else {
+                LOGGER.error("File not found: " + filename);
+            }
+            return;
+        }
 
+        Buffer content;
         try {
-            output.write(outputJson.toBuffer().getBytes());
+            content = fileContent(file, filename, offset, length);
         } catch (IOException e) {
-            handleException(e);
+            if (resultHandler != null) {
+                resultHandler.handle(Future.failedFuture(e));
+            } else {
+                LOGGER.error("Failed to read file: " + filename, e);
+            }
+            return;
+        }
+        if (content != null) {
+            headers().set(HttpHeaders.CONTENT_LENGTH, String.valueOf(content.length()));
+            end(content);
+        } else {
+            headers().remove(HttpHeaders.CONTENT_LENGTH);
+            end();
         }
+        if (resultHandler != null) {
+            resultHandler.handle(Future.succeededFuture());
+        }
+    }
 
+    /**
+     * Returns the content of the file to be sent and sets its headers. When
+     * the whole file is sent, the Range and the conditional headers of the
+     * request are applied: null is returned if the client's copy is still
+     * valid (304), only the requested ranges are read for a partial response
+     * (206) and an empty body is returned if none of the ranges is
+     * satisfiable (416).
+     */
+    private Buffer fileContent(File file, String filename, long offset, long length) throws IOException {
+        boolean wholeFile = offset == 0 && length == Long.MAX_VALUE;
+        StaticAssetCache.Asset asset = null;
+        if (assetCache != null && wholeFile) {
+            asset = assetCache.get(file);
+        }
+        if (!headers().contains(HttpHeaders.CONTENT_TYPE)) {
+            String contentType = MimeMapping.getMimeTypeForFilename(filename);
+            if (contentType != null) {
+                headers().set(HttpHeaders.CONTENT_TYPE, contentType);
+            }
+        }
+
+        long size = asset != null ? asset.content().length() : file.length();
+        List<ByteRange> ranges = null;
+        if (wholeFile && statusCode == HttpResponseStatus.OK.code()
+                && !headers().contains(HttpHeaders.CONTENT_RANGE)) {
+            headers().set(HttpHeaders.ACCEPT_RANGES, BYTES);
+            String range = requestHeader(RANGE);
+            if (range != null
+                    && ifRangeMatches(asset != null ? asset.etag(false) : headers().get(HttpHeaders.ETAG))) {
+                ranges = ByteRanges.parse(range, size);
+            }
+        }
+
+        boolean gzip = false;
+        if (asset != null) {
+            // the ranges always refer to the identity content
+            gzip = acceptsGzip(asset) && ranges == null;
+            headers().set(HttpHeaders.ETAG, asset.etag(gzip));
+            etagDigest = null;
+            if (asset.matches(requestHeader(HttpHeaders.IF_NONE_MATCH))) {
+                setStatus(HttpResponseStatus.NOT_MODIFIED);
+                return null;
+            }
+        }
+
+        if (ranges != null) {
+            etagDigest = null;
+            if (ranges.isEmpty()) {
+                setStatus(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+                headers().set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return Buffer.buffer();
+            }
+            setStatus(HttpResponseStatus.PARTIAL_CONTENT);
+            if (ranges.size() == 1) {
+                headers().set(HttpHeaders.CONTENT_RANGE, ranges.get(0).contentRange(size));
+                return slice(file, asset, ranges.get(0));
+            }
+            List<Buffer> parts = new ArrayList<>(ranges.size());
+            for (ByteRange range : ranges) {
+                parts.add(slice(file, asset, range));
+            }
+            String boundary = ByteRanges.boundary();
+            Buffer multipart = ByteRanges.multipart(ranges, parts, headers().get(HttpHeaders.CONTENT_TYPE), size,
+                    boundary);
+            headers().set(HttpHeaders.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+            return multipart;
+        }
+        if (asset == null) {
+            return FileContent.read(file, offset, length);
+        }
+        if (gzip) {
+            headers().set(HttpHeaders.CONTENT_ENCODING, ResponseCompressor.GZIP);
+            return asset.gzipContent();
+        }
+        return asset.content();
+    }
+
+    private static Buffer slice(File file, StaticAssetCache.Asset asset, ByteRange range) throws IOException {
+        if (asset != null) {
+            return asset.content().slice((int) range.first(), (int) range.last() + 1);
+        }
+        return FileContent.read(file, range.first(), range.length());
+    }
+
+    /**
+     * Returns true if the asset has a gzip variant which the client accepts.
+     * The response varies by Accept-Encoding in that case.
+     */
+    private boolean acceptsGzip(StaticAssetCache.Asset asset) {
+        if (asset.gzipContent() == null || headers().contains(HttpHeaders.CONTENT_ENCODING)) {
+            return false;
+        }
+        addVary(HttpHeaders.ACCEPT_ENCODING.toString());
+        String acceptEncoding = requestHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null
+                && ResponseCompressor.GZIP.equals(ResponseCompressor.negotiate(acceptEncoding));
+    }
+
+    /**
+     * Returns true if the Range header applies, that is if there is no
+     * If-Range header or it matches the strong ETag or the Last-Modified date
+     * of the file
+     */
+    private boolean ifRangeMatches(String etag) {
+        String ifRange = requestHeader(IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // weak entity tags never match
+            return etag != null && !etag.startsWith("W/") && ifRange.equals(etag);
+        }
+        return ifRange.equals(headers().get(HttpHeaders.LAST_MODIFIED));
+    }
+
+    private void applyETag() {
+        if (statusCode != HttpResponseStatus.OK.code()) {
+            return;
+        }
+        String etag = headers().get(HttpHeaders.ETAG);
+        if (etag == null) {
+            // weak, the body may still be compressed
+            etag = "W/\"" + etagDigest.hash() + "\"";
+            headers().set(HttpHeaders.ETAG, etag);
+        }
+        if (ETagDigest.matches(requestHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            setStatus(HttpResponseStatus.NOT_MODIFIED);
+            headers().remove(HttpHeaders.CONTENT_LENGTH);
+            chunked = false;
+        }
+    }
+
+    private void setStatus(HttpResponseStatus status) {
+        statusCode = status.code();
+        statusMessage = status.reasonPhrase();
+    }
+
+    private String requestHeader(CharSequence name) {
+        return requestHeaders != null ? requestHeaders.get(name) : null;
+    }
+
+    private File resolveFile(String filename) {
+        if (context != null) {
+            // files in the classpath are extracted to the cache directory
+            return ((VertxInternal) context.owner()).resolveFile(filename);
+        }
+        return new File(filename);
+    }
+
+    /**
+     * Compresses the body if the compression is enabled for it, or if it
+     * would exceed the payload limit in the given encoding
+     */
+    private void compressBody(boolean base64) {
+        if (headers().contains(HttpHeaders.CONTENT_ENCODING) || headers().contains(HttpHeaders.CONTENT_RANGE)) {
+            // already encoded by the application, or the ranges refer to
+            // the identity content
+            return;
+        }
+        String contentType = headers().get(HttpHeaders.CONTENT_TYPE);
+        int size = body().length();
+        if (!compressor.varies(contentType, size, base64)) {
+            return;
+        }
+        addVary(HttpHeaders.ACCEPT_ENCODING.toString());
+        String encoding = compressor.encoding(requestHeader(HttpHeaders.ACCEPT_ENCODING), contentType, size,
+                base64);
+        if (encoding == null) {
+            return;
+        }
         try {
-            output.close();
+            body = compressor.compress(body, encoding);
         } catch (IOException e) {
+            // send the body uncompressed
             handleException(e);
+            return;
+        }
+        headers().set(HttpHeaders.CONTENT_ENCODING, encoding);
+        if (headers().contains(HttpHeaders.CONTENT_LENGTH)) {
+            headers().set(HttpHeaders.CONTENT_LENGTH, String.valueOf(body.length()));
+        }
+    }
+
+    private void addVary(String header) {
+        String vary = headers().get(VARY);
+        if (vary == null) {
+            headers().set(VARY, header);
+        } else if (!vary.trim().equals("*") && !vary.toLowerCase().contains(header.toLowerCase())) {
+            headers().set(VARY, vary + ", " + header);
         }
     }
-}
\ No newline at end of file
+}
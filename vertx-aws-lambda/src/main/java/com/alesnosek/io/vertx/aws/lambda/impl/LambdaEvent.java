@@ -0,0 +1,69 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The parts of an API Gateway proxy event which are needed to build the HTTP
+ * request. The headers and the query parameters are kept as flat lists of
+ * alternating names and values. A name is repeated for each of its values.
+ */
+public class LambdaEvent {
+
+    String httpMethod;
+    String path;
+    String rawPath;
+    String rawQueryString;
+    final List<String> headers = new ArrayList<>();
+    final List<String> queryStringParameters = new ArrayList<>();
+    String body;
+    boolean isBase64Encoded;
+
+    public String httpMethod() {
+        return httpMethod;
+    }
+
+    public String path() {
+        return path;
+    }
+
+    /**
+     * Returns the path as received by the event source (not URL decoded), or
+     * null if the event source doesn't provide it
+     */
+    public String rawPath() {
+        return rawPath;
+    }
+
+    /**
+     * Returns the query string as received by the event source, or null if the
+     * event source doesn't provide it
+     */
+    public String rawQueryString() {
+        return rawQueryString;
+    }
+
+    /**
+     * Returns the header names and values, names are at the even and values at
+     * the odd indexes
+     */
+    public List<String> headers() {
+        return headers;
+    }
+
+    /**
+     * Returns the query parameter names and values, names are at the even and
+     * values at the odd indexes
+     */
+    public List<String> queryStringParameters() {
+        return queryStringParameters;
+    }
+
+    public String body() {
+        return body;
+    }
+
+    public boolean isBase64Encoded() {
+        return isBase64Encoded;
+    }
+}
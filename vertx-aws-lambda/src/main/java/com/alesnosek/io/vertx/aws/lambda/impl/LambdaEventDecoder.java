@@ -0,0 +1,163 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import io.vertx.core.json.DecodeException;
+
+/**
+ * Decodes an API Gateway proxy event in a single pass over the JSON tokens
+ * without building a JsonObject tree. The sections of the event which aren't
+ * needed (requestContext, stageVariables, ...) are skipped.
+ * <p>
+ * If the event contains the multi-value forms of the headers and the query
+ * parameters, they are used instead of the single-value forms which carry the
+ * last value only.
+ */
+public final class LambdaEventDecoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private LambdaEventDecoder() {
+    }
+
+    /**
+     * Decodes the event from the input stream
+     *
+     * @throws IOException
+     *             if the input stream cannot be read
+     * @throws DecodeException
+     *             if the input isn't a valid event
+     */
+    public static LambdaEvent decode(InputStream input) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+            return decode(parser);
+        }
+    }
+
+    private static LambdaEvent decode(JsonParser parser) throws IOException {
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new DecodeException("Lambda event must be a JSON object");
+            }
+            LambdaEvent event = new LambdaEvent();
+            boolean multiValueHeaders = false;
+            boolean multiValueQuery = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                case "httpMethod":
+                    event.httpMethod = textValue(parser, token);
+                    break;
+                case "path":
+                    event.path = textValue(parser, token);
+                    break;
+                case "rawPath":
+                    event.rawPath = textValue(parser, token);
+                    break;
+                case "rawQueryString":
+                    event.rawQueryString = textValue(parser, token);
+                    break;
+                case "headers":
+                    if (multiValueHeaders) {
+                        parser.skipChildren();
+                    } else {
+                        readStringMap(parser, token, event.headers);
+                    }
+                    break;
+                case "multiValueHeaders":
+                    if (token != JsonToken.VALUE_NULL) {
+                        event.headers.clear();
+                        readMultiValueMap(parser, token, event.headers);
+                        multiValueHeaders = true;
+                    }
+                    break;
+                case "queryStringParameters":
+                    if (multiValueQuery) {
+                        parser.skipChildren();
+                    } else {
+                        readStringMap(parser, token, event.queryStringParameters);
+                    }
+                    break;
+                case "multiValueQueryStringParameters":
+                    if (token != JsonToken.VALUE_NULL) {
+                        event.queryStringParameters.clear();
+                        readMultiValueMap(parser, token, event.queryStringParameters);
+                        multiValueQuery = true;
+                    }
+                    break;
+                case "body":
+                    event.body = textValue(parser, token);
+                    break;
+                case "isBase64Encoded":
+                    event.isBase64Encoded = token == JsonToken.VALUE_TRUE;
+                    break;
+                default:
+                    parser.skipChildren();
+                }
+            }
+            return event;
+        } catch (JsonProcessingException e) {
+            throw new DecodeException("Failed to decode the Lambda event: " + e.getMessage());
+        }
+    }
+
+    private static String textValue(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            throw new DecodeException("Unexpected value of " + parser.getCurrentName());
+        }
+        return parser.getText();
+    }
+
+    private static void readStringMap(JsonParser parser, JsonToken token, List<String> entries) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new DecodeException("Unexpected value of " + parser.getCurrentName());
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            String value = textValue(parser, parser.nextToken());
+            if (value != null) {
+                entries.add(name);
+                entries.add(value);
+            }
+        }
+    }
+
+    private static void readMultiValueMap(JsonParser parser, JsonToken token, List<String> entries)
+            throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            throw new DecodeException("Unexpected value of " + parser.getCurrentName());
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken valuesToken = parser.nextToken();
+            if (valuesToken == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            if (valuesToken != JsonToken.START_ARRAY) {
+                throw new DecodeException("Unexpected value of " + name);
+            }
+            JsonToken valueToken;
+            while ((valueToken = parser.nextToken()) != JsonToken.END_ARRAY) {
+                String value = textValue(parser, valueToken);
+                if (value != null) {
+                    entries.add(name);
+                    entries.add(value);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Decides whether a response body is sent as a plain text string or base64
+ * encoded. The media types are matched against patterns like "text/*",
+ * "application/json" or "application/*+json". A body is sent as text if its
+ * type matches one of the text media types, doesn't match any of the binary
+ * media types, declares no charset other than UTF-8 and is valid UTF-8. All
+ * the other bodies, including the ones without a Content-Type, are base64
+ * encoded.
+ */
+public final class MediaTypePolicy {
+
+    public static final List<String> DEFAULT_TEXT_MEDIA_TYPES = Collections.unmodifiableList(Arrays.asList("text/*",
+            "application/json", "application/*+json", "application/xml", "application/*+xml",
+            "application/javascript", "application/x-www-form-urlencoded"));
+
+    /**
+     * The policy sending all the bodies base64 encoded
+     */
+    public static final MediaTypePolicy ALL_BINARY = new MediaTypePolicy(Collections.emptyList(),
+            Collections.singletonList("*/*"));
+
+    private final List<String> textMediaTypes;
+    private final List<String> binaryMediaTypes;
+
+    public MediaTypePolicy(List<String> textMediaTypes, List<String> binaryMediaTypes) {
+        this.textMediaTypes = normalize(textMediaTypes);
+        this.binaryMediaTypes = normalize(binaryMediaTypes);
+    }
+
+    public List<String> textMediaTypes() {
+        return textMediaTypes;
+    }
+
+    public List<String> binaryMediaTypes() {
+        return binaryMediaTypes;
+    }
+
+    /**
+     * Returns true if the body of the given Content-Type should be sent as
+     * text
+     */
+    public boolean isText(String contentType, Buffer body) {
+        if (contentType == null || textMediaTypes.isEmpty()) {
+            return false;
+        }
+        int paramsStart = contentType.indexOf(';');
+        String mediaType = mediaType(contentType);
+        if (matchesAny(mediaType, binaryMediaTypes) || !matchesAny(mediaType, textMediaTypes)) {
+            return false;
+        }
+        if (paramsStart >= 0 && !isUtf8Charset(contentType.substring(paramsStart + 1))) {
+            return false;
+        }
+        return body == null || isValidUtf8(body.getByteBuf());
+    }
+
+    /**
+     * Returns the lower case media type without the parameters
+     */
+    static String mediaType(String contentType) {
+        int paramsStart = contentType.indexOf(';');
+        return (paramsStart < 0 ? contentType : contentType.substring(0, paramsStart)).trim()
+                .toLowerCase(Locale.ROOT);
+    }
+
+    static boolean matchesAny(String mediaType, List<String> patterns) {
+        for (String pattern : patterns) {
+            if (matches(pattern, 0, mediaType, 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches the media type against a pattern where '*' stands for any
+     * sequence of characters
+     */
+    private static boolean matches(String pattern, int p, String value, int v) {
+        while (p < pattern.length()) {
+            char c = pattern.charAt(p);
+            if (c == '*') {
+                for (int i = v; i <= value.length(); i++) {
+                    if (matches(pattern, p + 1, value, i)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (v == value.length() || value.charAt(v) != c) {
+                return false;
+            }
+            p++;
+            v++;
+        }
+        return v == value.length();
+    }
+
+    private static boolean isUtf8Charset(String params) {
+        for (String param : params.split(";")) {
+            int eq = param.indexOf('=');
+            if (eq > 0 && param.substring(0, eq).trim().equalsIgnoreCase("charset")) {
+                String charset = param.substring(eq + 1).trim().replace("\"", "");
+                return charset.equalsIgnoreCase("utf-8") || charset.equalsIgnoreCase("utf8")
+                        || charset.equalsIgnoreCase("us-ascii");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that the bytes are well-formed UTF-8, so that they can be copied
+     * into the JSON string as they are
+     */
+    static boolean isValidUtf8(ByteBuf buf) {
+        int index = buf.readerIndex();
+        int end = buf.writerIndex();
+        while (index < end) {
+            int b = buf.getByte(index++);
+            if (b >= 0) {
+                continue;
+            }
+            int continuation;
+            int min;
+            if ((b & 0xE0) == 0xC0) {
+                continuation = 1;
+                min = 0x80;
+                b &= 0x1F;
+            } else if ((b & 0xF0) == 0xE0) {
+                continuation = 2;
+                min = 0x800;
+                b &= 0x0F;
+            } else if ((b & 0xF8) == 0xF0) {
+                continuation = 3;
+                min = 0x10000;
+                b &= 0x07;
+            } else {
+                return false;
+            }
+            if (end - index < continuation) {
+                return false;
+            }
+            int codePoint = b;
+            for (int i = 0; i < continuation; i++) {
+                int next = buf.getByte(index++);
+                if ((next & 0xC0) != 0x80) {
+                    return false;
+                }
+                codePoint = (codePoint << 6) | (next & 0x3F);
+            }
+            if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+                    || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static List<String> normalize(List<String> mediaTypes) {
+        List<String> result = new ArrayList<>(mediaTypes.size());
+        for (String mediaType : mediaTypes) {
+            result.add(mediaType.trim().toLowerCase(Locale.ROOT));
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
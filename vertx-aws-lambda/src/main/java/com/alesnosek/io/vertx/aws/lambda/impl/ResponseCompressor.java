@@ -0,0 +1,188 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Compresses the response bodies with gzip or deflate as negotiated by the
+ * request's Accept-Encoding header. If enabled, the bodies of the compressible
+ * media types which are at least the minimum size are compressed. Regardless
+ * of the settings, a body is compressed if its base64 encoded envelope would
+ * exceed the Lambda payload limit otherwise.
+ */
+public final class ResponseCompressor {
+
+    /**
+     * Maximum size of a synchronous Lambda response
+     */
+    public static final int PAYLOAD_LIMIT = 6 * 1024 * 1024;
+
+    public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    public static final int DEFAULT_MIN_SIZE = 1024;
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    /**
+     * Compressor which compresses only the bodies exceeding the payload limit
+     */
+    public static final ResponseCompressor DISABLED = new ResponseCompressor(false, DEFAULT_COMPRESSION_LEVEL,
+            DEFAULT_MIN_SIZE, MediaTypePolicy.DEFAULT_TEXT_MEDIA_TYPES);
+
+    private final boolean enabled;
+    private final int level;
+    private final int minSize;
+    private final List<String> mediaTypes;
+
+    public ResponseCompressor(boolean enabled, int level, int minSize, List<String> mediaTypes) {
+        if (level < 1 || level > 9) {
+            throw new IllegalArgumentException("Compression level must be between 1 and 9");
+        }
+        this.enabled = enabled;
+        this.level = level;
+        this.minSize = minSize;
+        this.mediaTypes = MediaTypePolicy.normalize(mediaTypes);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public int level() {
+        return level;
+    }
+
+    public int minSize() {
+        return minSize;
+    }
+
+    public List<String> mediaTypes() {
+        return mediaTypes;
+    }
+
+    /**
+     * Returns true if the choice to compress the body of the given type and
+     * size depends on the Accept-Encoding header, so that the response must
+     * carry "Vary: Accept-Encoding". A body which would exceed the payload
+     * limit in its encoding (base64 or text) is always compressed if possible.
+     */
+    public boolean varies(String contentType, int size, boolean base64) {
+        if (exceedsLimit(size, base64)) {
+            return true;
+        }
+        return enabled && size >= minSize && contentType != null
+                && MediaTypePolicy.matchesAny(MediaTypePolicy.mediaType(contentType), mediaTypes);
+    }
+
+    /**
+     * Returns the content coding used for the body of the given type, size and
+     * encoding, or null if it shouldn't be compressed
+     */
+    public String encoding(String acceptEncoding, String contentType, int size, boolean base64) {
+        if (acceptEncoding == null || !varies(contentType, size, base64)) {
+            return null;
+        }
+        return negotiate(acceptEncoding);
+    }
+
+    /**
+     * Compresses the body with the given content coding
+     */
+    public Buffer compress(Buffer body, String encoding) throws IOException {
+        ByteBuf source = body.getByteBuf();
+        ByteBuf target = Unpooled.buffer(Math.max(64, source.readableBytes() / 4));
+        OutputStream output;
+        Deflater deflater = null;
+        if (GZIP.equals(encoding)) {
+            output = new GZIPOutputStream(new ByteBufOutputStream(target)) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        } else {
+            deflater = new Deflater(level);
+            output = new DeflaterOutputStream(new ByteBufOutputStream(target), deflater);
+        }
+        try {
+            source.getBytes(source.readerIndex(), output, source.readableBytes());
+            output.close();
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        return Buffer.buffer(target);
+    }
+
+    private static boolean exceedsLimit(int size, boolean base64) {
+        long encodedSize = base64 ? (size + 2L) / 3 * 4 : size;
+        return encodedSize > PAYLOAD_LIMIT;
+    }
+
+    /**
+     * Selects gzip or deflate according to their quality values, gzip is
+     * preferred if both are equally acceptable
+     */
+    static String negotiate(String acceptEncoding) {
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            int paramsStart = coding.indexOf(';');
+            String name = (paramsStart < 0 ? coding : coding.substring(0, paramsStart)).trim()
+                    .toLowerCase(Locale.ROOT);
+            float quality = paramsStart < 0 ? 1 : quality(coding.substring(paramsStart + 1));
+            switch (name) {
+            case GZIP:
+            case "x-gzip":
+                gzip = Math.max(gzip, quality);
+                break;
+            case DEFLATE:
+                deflate = Math.max(deflate, quality);
+                break;
+            case "*":
+                any = Math.max(any, quality);
+                break;
+            default:
+                break;
+            }
+        }
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        }
+        if (deflate > 0) {
+            return DEFLATE;
+        }
+        return null;
+    }
+
+    private static float quality(String params) {
+        for (String param : params.split(";")) {
+            int eq = param.indexOf('=');
+            if (eq > 0 && param.substring(0, eq).trim().equalsIgnoreCase("q")) {
+                try {
+                    return Float.parseFloat(param.substring(eq + 1).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
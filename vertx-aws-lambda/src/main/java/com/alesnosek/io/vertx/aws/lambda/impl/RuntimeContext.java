@@ -0,0 +1,104 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+
+/**
+ * Lambda context of an invocation received from the Lambda Runtime API. The
+ * function metadata is taken from the environment variables set by the Lambda
+ * service.
+ */
+public class RuntimeContext implements Context {
+
+    private static final LambdaLogger LOGGER = message -> System.out.println(message);
+
+    private final String awsRequestId;
+    private final String invokedFunctionArn;
+    private final long deadlineMs;
+    private final String traceId;
+
+    public RuntimeContext(String awsRequestId, String invokedFunctionArn, long deadlineMs) {
+        this(awsRequestId, invokedFunctionArn, deadlineMs, null);
+    }
+
+    public RuntimeContext(String awsRequestId, String invokedFunctionArn, long deadlineMs, String traceId) {
+        this.awsRequestId = awsRequestId;
+        this.invokedFunctionArn = invokedFunctionArn;
+        this.deadlineMs = deadlineMs;
+        this.traceId = traceId;
+    }
+
+    @Override
+    public String getAwsRequestId() {
+        return awsRequestId;
+    }
+
+    /**
+     * Returns the X-Ray trace header of this invocation, or null if the
+     * invocation isn't traced
+     */
+    public String getTraceId() {
+        return traceId;
+    }
+
+    @Override
+    public String getLogGroupName() {
+        return System.getenv("AWS_LAMBDA_LOG_GROUP_NAME");
+    }
+
+    @Override
+    public String getLogStreamName() {
+        return System.getenv("AWS_LAMBDA_LOG_STREAM_NAME");
+    }
+
+    @Override
+    public String getFunctionName() {
+        return System.getenv("AWS_LAMBDA_FUNCTION_NAME");
+    }
+
+    @Override
+    public String getFunctionVersion() {
+        return System.getenv("AWS_LAMBDA_FUNCTION_VERSION");
+    }
+
+    @Override
+    public String getInvokedFunctionArn() {
+        return invokedFunctionArn;
+    }
+
+    @Override
+    public CognitoIdentity getIdentity() {
+        return null;
+    }
+
+    @Override
+    public ClientContext getClientContext() {
+        return null;
+    }
+
+    @Override
+    public int getRemainingTimeInMillis() {
+        long remaining = deadlineMs - System.currentTimeMillis();
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, remaining));
+    }
+
+    @Override
+    public int getMemoryLimitInMB() {
+        String memorySize = System.getenv("AWS_LAMBDA_FUNCTION_MEMORY_SIZE");
+        if (memorySize == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(memorySize);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public LambdaLogger getLogger() {
+        return LOGGER;
+    }
+}
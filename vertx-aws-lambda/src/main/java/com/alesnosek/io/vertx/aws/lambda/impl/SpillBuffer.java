@@ -0,0 +1,91 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Body buffer backed by a temporary file. The appended data is written to the
+ * file instead of the heap and the complete body is memory mapped, so that
+ * large bodies are paged in from the page cache while they are encoded. The
+ * file is deleted right after it has been created, it disappears once the
+ * buffer has been closed and the mapping has been garbage collected. The
+ * buffer can also be written as an output stream, e.g. by a
+ * {@link StreamingWriter}.
+ */
+public class SpillBuffer extends OutputStream {
+
+    public static final int DEFAULT_SPILL_THRESHOLD = 4 * 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private long length;
+    private boolean closed;
+
+    /**
+     * Creates the temporary file in the given directory
+     */
+    public SpillBuffer(File directory) throws IOException {
+        File path = File.createTempFile("vertx-lambda-body", ".tmp", directory);
+        file = new RandomAccessFile(path, "rw");
+        channel = file.getChannel();
+        if (!path.delete()) {
+            path.deleteOnExit();
+        }
+    }
+
+    public void append(Buffer data) throws IOException {
+        if (closed) {
+            throw new IOException("Spill buffer has already been closed");
+        }
+        for (ByteBuffer nioBuffer : data.getByteBuf().nioBuffers()) {
+            while (nioBuffer.hasRemaining()) {
+                length += channel.write(nioBuffer);
+            }
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        append(Buffer.buffer(Unpooled.wrappedBuffer(b, off, len)));
+    }
+
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Maps the complete body and closes the file. The returned buffer stays
+     * valid after the file has been closed.
+     */
+    public Buffer toBuffer() throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            close();
+            throw new IOException("Response body is too large: " + length);
+        }
+        try {
+            return Buffer.buffer(Unpooled.wrappedBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, length)));
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Writes the buffers to a blocking output stream without blocking the event
+ * loop. The writes are executed in order on a worker thread and flushed one by
+ * one. The number of bytes which haven't been written yet is tracked, so that
+ * the write queue becomes full if the output stream doesn't keep up. If no
+ * context is given, the buffers are written synchronously.
+ */
+public class StreamingWriter {
+
+    public static final int DEFAULT_WRITE_QUEUE_MAX_SIZE = 64 * 1024;
+
+    private final Context context;
+    private final OutputStream output;
+
+    private int maxSize = DEFAULT_WRITE_QUEUE_MAX_SIZE;
+    private long queued;
+    private boolean drainRequested;
+    private boolean failed;
+    private Handler<Void> drainHandler;
+    private Handler<Throwable> exceptionHandler;
+
+    public StreamingWriter(Context context, OutputStream output) {
+        this.context = context;
+        this.output = output;
+    }
+
+    public synchronized void setWriteQueueMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public synchronized boolean writeQueueFull() {
+        boolean full = queued >= maxSize;
+        if (full) {
+            drainRequested = true;
+        }
+        return full;
+    }
+
+    /**
+     * Sets the handler called once the queued data drops under half of the
+     * maximum size after the queue has been full
+     */
+    public synchronized void drainHandler(Handler<Void> handler) {
+        this.drainHandler = handler;
+    }
+
+    /**
+     * Sets the handler called if writing to the output stream fails, the
+     * following data is discarded
+     */
+    public synchronized void exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+    }
+
+    /**
+     * Returns the number of bytes which haven't been written yet
+     */
+    public synchronized long queuedBytes() {
+        return queued;
+    }
+
+    public void write(Buffer data) {
+        int length = data.length();
+        synchronized (this) {
+            queued += length;
+        }
+        execute(() -> {
+            ByteBuf buf = data.getByteBuf();
+            buf.getBytes(buf.readerIndex(), output, buf.readableBytes());
+            output.flush();
+        }, length);
+    }
+
+    /**
+     * Closes the output stream once all the queued data has been written
+     */
+    public void close() {
+        execute(output::close, 0, null);
+    }
+
+    /**
+     * Calls the handler once all the queued data has been written, or has
+     * failed to be written
+     */
+    public void flush(Handler<Void> handler) {
+        execute(output::flush, 0, handler);
+    }
+
+    private void execute(IOAction action, int length) {
+        execute(action, length, null);
+    }
+
+    private void execute(IOAction action, int length, Handler<Void> doneHandler) {
+        if (context == null) {
+            try {
+                if (!isFailed()) {
+                    action.run();
+                }
+                written(length, null);
+            } catch (IOException e) {
+                written(length, e);
+            }
+            if (doneHandler != null) {
+                doneHandler.handle(null);
+            }
+            return;
+        }
+        context.<Void>executeBlocking(future -> {
+            try {
+                if (!isFailed()) {
+                    action.run();
+                }
+                future.complete();
+            } catch (IOException e) {
+                future.fail(e);
+            }
+        }, true, ar -> {
+            written(length, ar.cause());
+            if (doneHandler != null) {
+                doneHandler.handle(null);
+            }
+        });
+    }
+
+    private synchronized boolean isFailed() {
+        return failed;
+    }
+
+    private void written(int length, Throwable cause) {
+        Handler<Void> drain = null;
+        Handler<Throwable> exception = null;
+        synchronized (this) {
+            queued -= length;
+            if (cause != null && !failed) {
+                failed = true;
+                exception = exceptionHandler;
+            }
+            if (drainRequested && queued < maxSize / 2) {
+                drainRequested = false;
+                drain = drainHandler;
+            }
+        }
+        if (exception != null) {
+            exception.handle(cause);
+        }
+        if (drain != null) {
+            drain.handle(null);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IOAction {
+        void run() throws IOException;
+    }
+}
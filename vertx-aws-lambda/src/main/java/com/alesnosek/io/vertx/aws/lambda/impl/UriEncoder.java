@@ -0,0 +1,62 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+/**
+ * Percent-encodes the query parameter names and values. The same characters as
+ * with URLEncoder are left unencoded, but the space is encoded as %20 and the
+ * result is appended to the given StringBuilder without any intermediate
+ * strings.
+ */
+public final class UriEncoder {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private UriEncoder() {
+    }
+
+    /**
+     * Appends the UTF-8 percent-encoded value to the StringBuilder
+     */
+    public static StringBuilder appendEncoded(StringBuilder sb, String value) {
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                continue;
+            }
+            // copy the preceding run of unreserved characters at once
+            sb.append(value, start, i);
+            if (c < 0x80) {
+                appendByte(sb, c);
+            } else if (c < 0x800) {
+                appendByte(sb, 0xC0 | (c >> 6));
+                appendByte(sb, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendByte(sb, 0xF0 | (codePoint >> 18));
+                appendByte(sb, 0x80 | ((codePoint >> 12) & 0x3F));
+                appendByte(sb, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendByte(sb, 0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate is encoded as '?' like String.getBytes does
+                appendByte(sb, '?');
+            } else {
+                appendByte(sb, 0xE0 | (c >> 12));
+                appendByte(sb, 0x80 | ((c >> 6) & 0x3F));
+                appendByte(sb, 0x80 | (c & 0x3F));
+            }
+            start = i + 1;
+        }
+        return sb.append(value, start, length);
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_'
+                || c == '.' || c == '*';
+    }
+
+    private static void appendByte(StringBuilder sb, int b) {
+        sb.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+}
@@ -0,0 +1,89 @@
+package com.alesnosek.io.vertx.aws.lambda;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class CheckpointHooksTest {
+
+    Vertx vertx;
+    CheckpointHooks hooks;
+
+    @Before
+    public void before(TestContext context) {
+        vertx = Vertx.vertx();
+        hooks = new CheckpointHooks(vertx);
+    }
+
+    @After
+    public void after(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testHandlers(TestContext context) throws Exception {
+        StringBuilder res = new StringBuilder();
+        hooks.beforeCheckpointHandler(v -> res.append("checkpoint "));
+        hooks.afterRestoreHandler(v -> res.append("restore"));
+        hooks.beforeCheckpoint(null);
+        hooks.afterRestore(null);
+        context.assertEquals("checkpoint restore", res.toString());
+    }
+
+    @Test
+    public void testTimerRearmed(TestContext context) throws Exception {
+        AtomicInteger fired = new AtomicInteger();
+        Async async = context.async();
+        long id = hooks.setTimer(100, tid -> {
+            fired.incrementAndGet();
+            async.complete();
+        });
+        context.assertTrue(id > 0);
+
+        hooks.beforeCheckpoint(null);
+        Thread.sleep(200);
+        context.assertEquals(0, fired.get());
+        hooks.afterRestore(null);
+    }
+
+    @Test
+    public void testPeriodicRearmed(TestContext context) throws Exception {
+        Async async = context.async(3);
+        long id = hooks.setPeriodic(20, tid -> async.countDown());
+        hooks.beforeCheckpoint(null);
+        hooks.afterRestore(null);
+        async.handler(ar -> hooks.cancelTimer(id));
+    }
+
+    @Test
+    public void testCancelTimer(TestContext context) throws Exception {
+        long id = hooks.setTimer(50, tid -> context.fail("Timer must not fire"));
+        context.assertTrue(hooks.cancelTimer(id));
+        context.assertFalse(hooks.cancelTimer(id));
+        hooks.beforeCheckpoint(null);
+        hooks.afterRestore(null);
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testHttpClientRecreated(TestContext context) throws Exception {
+        Supplier<HttpClient> client = hooks.httpClient(new HttpClientOptions());
+        HttpClient first = client.get();
+        context.assertEquals(first, client.get());
+        hooks.beforeCheckpoint(null);
+        hooks.afterRestore(null);
+        context.assertNotEquals(first, client.get());
+    }
+}
@@ -0,0 +1,305 @@
+package com.alesnosek.io.vertx.aws.lambda;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.alesnosek.io.vertx.aws.lambda.impl.RuntimeContext;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class CustomRuntimeTest {
+
+    Vertx vertx;
+    HttpServer runtimeApi;
+    CustomRuntime runtime;
+
+    Queue<Buffer> events = new LinkedList<>();
+    Handler<HttpServerRequest> postHandler;
+
+    @Before
+    public void before(TestContext context) {
+        vertx = Vertx.vertx();
+        runtimeApi = vertx.createHttpServer().requestHandler(this::handleRuntimeApi);
+        runtimeApi.listen(0, "localhost", context.asyncAssertSuccess());
+    }
+
+    @After
+    public void after(TestContext context) {
+        if (runtime != null) {
+            runtime.stop();
+        }
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testInvocation(TestContext context) throws IOException {
+        events.add(loadData("request_basic.json"));
+        events.add(loadData("request_path.json"));
+
+        Async async = context.async(2);
+        postHandler = req -> {
+            context.assertTrue(req.path().endsWith("/response"));
+            req.bodyHandler(body -> {
+                JsonObject response = new JsonObject(body);
+                context.assertEquals(200, response.getInteger("statusCode"));
+                String requestId = req.path().split("/")[4];
+                context.assertEquals("response for " + requestId, new String(response.getBinary("body")));
+                req.response().setStatusCode(202).end();
+                async.countDown();
+            });
+        };
+
+        runtime = new CustomRuntime(vertx, "localhost:" + runtimeApi.actualPort(), req -> {
+            req.response().end("response for " + req.headers().get("X-Request-Id"));
+        });
+        runtime.start();
+    }
+
+    @Test
+    public void testInvocationError(TestContext context) throws IOException {
+        events.add(loadData("request_basic.json"));
+
+        Async async = context.async();
+        postHandler = req -> {
+            context.assertTrue(req.path().endsWith("/response"));
+            req.bodyHandler(body -> {
+                JsonObject response = new JsonObject(body);
+                context.assertEquals(500, response.getInteger("statusCode"));
+                context.assertEquals("Internal Server Error",
+                        new String(response.getBinary("body"), StandardCharsets.UTF_8));
+                req.response().setStatusCode(202).end();
+                async.complete();
+            });
+        };
+
+        runtime = new CustomRuntime(vertx, "localhost:" + runtimeApi.actualPort(), req -> {
+            throw new IllegalStateException("handler failure");
+        });
+        runtime.start();
+    }
+
+    @Test
+    public void testConcurrentInvocations(TestContext context) throws IOException {
+        for (int i = 0; i < 3; i++) {
+            events.add(loadData("request_basic.json"));
+        }
+
+        AtomicInteger maxInFlight = new AtomicInteger();
+        Async async = context.async(3);
+        postHandler = req -> {
+            req.bodyHandler(body -> {
+                req.response().setStatusCode(202).end();
+                if (async.count() == 1) {
+                    context.assertEquals(3, maxInFlight.get());
+                }
+                async.countDown();
+            });
+        };
+
+        runtime = new CustomRuntime(vertx, "localhost:" + runtimeApi.actualPort(), req -> {
+            maxInFlight.accumulateAndGet(runtime.inFlightInvocations(), Math::max);
+            context.assertNotNull(runtime.invocation(req.headers().get("X-Request-Id")));
+            vertx.setTimer(200, id -> req.response().end("data"));
+        });
+        runtime.setConcurrency(3);
+        context.assertEquals(3, runtime.getConcurrency());
+        runtime.start();
+    }
+
+    @Test
+    public void testConcurrentTraceIds(TestContext context) throws IOException {
+        System.clearProperty(CustomRuntime.TRACE_HEADER_PROPERTY);
+        for (int i = 0; i < 2; i++) {
+            events.add(loadData("request_basic.json"));
+        }
+
+        Async async = context.async(2);
+        postHandler = req -> {
+            req.bodyHandler(body -> {
+                req.response().setStatusCode(202).end();
+                async.countDown();
+            });
+        };
+
+        runtime = new CustomRuntime(vertx, "localhost:" + runtimeApi.actualPort(), req -> {
+            String requestId = req.headers().get("X-Request-Id");
+            RuntimeContext invocation = (RuntimeContext) runtime.invocation(requestId);
+            context.assertEquals("Root=" + requestId, invocation.getTraceId());
+            // not shared by the concurrent invocations
+            context.assertNull(System.getProperty(CustomRuntime.TRACE_HEADER_PROPERTY));
+            vertx.setTimer(100, id -> req.response().end("data"));
+        });
+        runtime.setConcurrency(2);
+        runtime.start();
+    }
+
+    @Test
+    public void testResponseStreaming(TestContext context) throws IOException {
+        events.add(loadData("request_basic.json"));
+
+        Async async = context.async();
+        postHandler = req -> {
+            context.assertTrue(req.path().endsWith("/response"));
+            context.assertEquals("streaming", req.getHeader(CustomRuntime.HEADER_RESPONSE_MODE));
+            context.assertEquals(CustomRuntime.STREAMING_CONTENT_TYPE, req.getHeader("Content-Type"));
+            req.bodyHandler(body -> {
+                String data = body.toString();
+                int delimiter = data.indexOf('\0');
+                context.assertEquals(201, new JsonObject(data.substring(0, delimiter)).getInteger("statusCode"));
+                context.assertEquals("\0\0\0\0\0\0\0\0chunk1 chunk2", data.substring(delimiter));
+                req.response().setStatusCode(202).end();
+                async.complete();
+            });
+        };
+
+        runtime = new CustomRuntime(vertx, "localhost:" + runtimeApi.actualPort(), req -> {
+            req.response().setStatusCode(201).setChunked(true).write("chunk1 ");
+            vertx.setTimer(10, id -> req.response().end("chunk2"));
+        });
+        context.assertEquals(runtime, runtime.setResponseStreaming(true));
+        context.assertTrue(runtime.isResponseStreaming());
+        runtime.start();
+    }
+
+    @Test
+    public void testHandlerConfiguration(TestContext context) throws IOException {
+        events.add(loadData("request_basic.json"));
+
+        Async async = context.async();
+        postHandler = req -> {
+            req.bodyHandler(body -> {
+                JsonObject response = new JsonObject(body);
+                // text/plain is a binary media type set by configureServer()
+                context.assertTrue(response.getBoolean("isBase64Encoded"));
+                context.assertEquals("data", new String(response.getBinary("body")));
+                req.response().setStatusCode(202).end();
+                async.complete();
+            });
+        };
+
+        ConfiguredHandler handler = new ConfiguredHandler();
+        handler.init();
+        runtime = new CustomRuntime("localhost:" + runtimeApi.actualPort(), handler);
+        runtime.start();
+    }
+
+    @Test
+    public void testStaticAssetCache(TestContext context) throws IOException {
+        File asset = File.createTempFile("asset", ".txt");
+        asset.deleteOnExit();
+        Files.write(asset.toPath(), "asset content".getBytes(StandardCharsets.UTF_8));
+        events.add(loadData("request_basic.json"));
+        events.add(loadData("request_basic.json"));
+
+        ConfiguredHandler handler = new ConfiguredHandler(asset);
+        handler.init();
+
+        Async async = context.async(2);
+        postHandler = req -> {
+            req.bodyHandler(body -> {
+                JsonObject response = new JsonObject(body);
+                String etag = response.getJsonObject("headers").getString("ETag");
+                // strong ETag of the cached asset
+                context.assertTrue(etag.startsWith("\""));
+                context.assertEquals("asset content", new String(response.getBinary("body")));
+                context.assertEquals(1, handler.staticAssetCache().entries());
+                req.response().setStatusCode(202).end();
+                async.countDown();
+            });
+        };
+
+        runtime = new CustomRuntime("localhost:" + runtimeApi.actualPort(), handler);
+        runtime.start();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidConcurrency(TestContext context) {
+        new CustomRuntime(vertx, "localhost:9001", req -> {
+        }).setConcurrency(0);
+    }
+
+    class ConfiguredHandler extends LambdaHandler {
+
+        private final File asset;
+
+        ConfiguredHandler() {
+            this(null);
+        }
+
+        ConfiguredHandler(File asset) {
+            super(false);
+            this.asset = asset;
+        }
+
+        @Override
+        protected Vertx createVertx() {
+            return vertx;
+        }
+
+        @Override
+        protected Handler<HttpServerRequest> createRequestHandler(Vertx vertx) {
+            if (asset != null) {
+                return req -> req.response().sendFile(asset.getPath());
+            }
+            return req -> req.response().putHeader("Content-Type", "text/plain").end("data");
+        }
+
+        @Override
+        protected void configureServer(LambdaServer server) {
+            server.setBinaryMediaTypes(Arrays.asList("text/plain"));
+        }
+    }
+
+    private int requestCounter;
+
+    private void handleRuntimeApi(HttpServerRequest req) {
+        if (req.path().equals(CustomRuntime.RUNTIME_PATH + "/invocation/next")) {
+            Buffer event = events.poll();
+            if (event == null) {
+                // long poll, never answered within the test
+                return;
+            }
+            String requestId = "req-" + (++requestCounter);
+            JsonObject json = new JsonObject(event);
+            json.put("headers", new JsonObject().put("X-Request-Id", requestId));
+            req.response().putHeader(CustomRuntime.HEADER_REQUEST_ID, requestId)
+                    .putHeader(CustomRuntime.HEADER_TRACE_ID, "Root=" + requestId)
+                    .putHeader(CustomRuntime.HEADER_DEADLINE_MS, String.valueOf(System.currentTimeMillis() + 30000))
+                    .end(json.toBuffer());
+        } else {
+            postHandler.handle(req);
+        }
+    }
+
+    private static Buffer loadData(String fileName) throws IOException {
+        InputStream input = CustomRuntimeTest.class.getClassLoader().getResourceAsStream(fileName);
+        Buffer buffer = Buffer.buffer();
+        byte[] data = new byte[1024];
+        int read;
+        while ((read = input.read(data, 0, data.length)) != -1) {
+            buffer.appendBytes(data, 0, read);
+        }
+        return buffer;
+    }
+}
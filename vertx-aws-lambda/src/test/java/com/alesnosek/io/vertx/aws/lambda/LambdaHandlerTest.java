@@ -0,0 +1,177 @@
+package com.alesnosek.io.vertx.aws.lambda;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.alesnosek.io.vertx.aws.lambda.impl.RuntimeContext;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class LambdaHandlerTest {
+
+    TestHandler handler;
+
+    @Before
+    public void before(TestContext context) {
+        handler = new TestHandler();
+    }
+
+    @After
+    public void after(TestContext context) {
+        if (handler.vertx() != null) {
+            handler.vertx().close(context.asyncAssertSuccess());
+        }
+    }
+
+    @Test
+    public void testHandleRequest(TestContext context) throws IOException {
+        JsonObject response = invoke();
+        context.assertEquals(200, response.getInteger("statusCode"));
+        context.assertEquals("response 1", new String(response.getBinary("body")));
+    }
+
+    @Test
+    public void testReuseAcrossInvocations(TestContext context) throws IOException {
+        invoke();
+        Vertx vertx = handler.vertx();
+        JsonObject response = invoke();
+        context.assertEquals("response 2", new String(response.getBinary("body")));
+        context.assertEquals(1, handler.created);
+        context.assertEquals(vertx, handler.vertx());
+    }
+
+    @Test
+    public void testPriming(TestContext context) throws IOException {
+        handler.primingResource = "request_path.json";
+        JsonObject response = invoke();
+        context.assertEquals("response 2", new String(response.getBinary("body")));
+    }
+
+    @Test
+    public void testPrimedBeforeFirstInvocation(TestContext context) throws IOException {
+        PrimedHandler primed = new PrimedHandler();
+        try {
+            // the priming event has been processed by the constructor
+            context.assertNotNull(primed.vertx());
+            context.assertEquals(1, primed.invocations);
+            // primed through a server in the production configuration
+            context.assertEquals(1, primed.configured);
+
+            InputStream input = this.getClass().getClassLoader().getResourceAsStream("request_basic.json");
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            primed.handleRequest(input, output, null);
+            context.assertEquals("response 2",
+                    new String(new JsonObject(output.toString()).getBinary("body")));
+        } finally {
+            primed.vertx().close(context.asyncAssertSuccess());
+        }
+    }
+
+    @Test
+    public void testCheckpointHooksBeforeFirstInvocation(TestContext context) throws Exception {
+        PrimedHandler primed = new PrimedHandler();
+        try {
+            CheckpointHooks hooks = primed.checkpointHooks();
+            context.assertNotNull(hooks);
+            // the handler added by createRequestHandler() runs on a checkpoint
+            // taken before any invocation
+            hooks.beforeCheckpoint(null);
+            hooks.afterRestore(null);
+            context.assertEquals(1, primed.checkpoints);
+        } finally {
+            primed.vertx().close(context.asyncAssertSuccess());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testHandlerFailure(TestContext context) throws IOException {
+        handler.failure = new IllegalStateException("handler failure");
+        invoke();
+    }
+
+    @Test
+    public void testResponseTimeout(TestContext context) throws IOException {
+        handler.ignoreRequests = true;
+        InputStream input = this.getClass().getClassLoader().getResourceAsStream("request_basic.json");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        handler.handleRequest(input, output, new RuntimeContext("id", null, System.currentTimeMillis() + 600));
+        context.assertEquals(504, new JsonObject(output.toString()).getInteger("statusCode"));
+    }
+
+    private JsonObject invoke() throws IOException {
+        InputStream input = this.getClass().getClassLoader().getResourceAsStream("request_basic.json");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        handler.handleRequest(input, output, null);
+        return new JsonObject(output.toString());
+    }
+
+    static class TestHandler extends LambdaHandler {
+
+        int created;
+        int invocations;
+        String primingResource;
+        RuntimeException failure;
+        boolean ignoreRequests;
+
+        TestHandler() {
+            // initialized on the first invocation, after the fields were set
+            super(false);
+        }
+
+        @Override
+        protected Handler<HttpServerRequest> createRequestHandler(Vertx vertx) {
+            created++;
+            return req -> {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (!ignoreRequests) {
+                    req.response().end("response " + (++invocations));
+                }
+            };
+        }
+
+        @Override
+        protected void configurePriming(Primer primer) throws IOException {
+            if (primingResource != null) {
+                primer.addResource(primingResource);
+            }
+        }
+    }
+
+    static class PrimedHandler extends LambdaHandler {
+
+        // no initializers, they are set from the superclass constructor
+        int invocations;
+        int checkpoints;
+        int configured;
+
+        @Override
+        protected Handler<HttpServerRequest> createRequestHandler(Vertx vertx) {
+            checkpointHooks().beforeCheckpointHandler(v -> checkpoints++);
+            return req -> req.response().end("response " + (++invocations));
+        }
+
+        @Override
+        protected void configureServer(LambdaServer server) {
+            configured++;
+        }
+
+        @Override
+        protected void configurePriming(Primer primer) throws IOException {
+            primer.addResource("request_path.json");
+        }
+    }
+}
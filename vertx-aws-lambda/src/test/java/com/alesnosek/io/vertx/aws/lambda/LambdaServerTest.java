@@ -1,7 +1,16 @@
 package com.alesnosek.io.vertx.aws.lambda;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
@@ -9,12 +18,16 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import com.alesnosek.io.vertx.aws.lambda.LambdaServer;
+import com.alesnosek.io.vertx.aws.lambda.impl.MediaTypePolicy;
+import com.alesnosek.io.vertx.aws.lambda.impl.RuntimeContext;
 
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.http.ServerWebSocket;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.TestContext;
@@ -83,12 +96,13 @@ public class LambdaServerTest {
     }
 
     @Test
-    public void testListen(TestContext context) {
+    public void testListen(TestContext context) throws Exception {
         server.requestHandler(req -> {
             context.assertEquals("0.0.0.0", req.host());
             req.response().end("data");
         });
         context.assertEquals(server, server.listen());
+        server.completion().get(5, TimeUnit.SECONDS);
         context.assertEquals(0, server.actualPort());
 
         JsonObject response = new JsonObject(outputData.toString());
@@ -99,12 +113,13 @@ public class LambdaServerTest {
     }
 
     @Test
-    public void testListen2(TestContext context) {
+    public void testListen2(TestContext context) throws Exception {
         server.requestHandler(req -> {
             context.assertEquals("myhost", req.host());
             req.response().end("data2");
         });
         context.assertEquals(server, server.listen(8888, "myhost"));
+        server.completion().get(5, TimeUnit.SECONDS);
         context.assertEquals(8888, server.actualPort());
 
         JsonObject response = new JsonObject(outputData.toString());
@@ -112,13 +127,14 @@ public class LambdaServerTest {
     }
 
     @Test
-    public void testListen3(TestContext context) {
+    public void testListen3(TestContext context) throws Exception {
         Future<HttpServer> future = Future.future();
         server.requestHandler(req -> {
             context.assertEquals("myhost", req.host());
             req.response().end("data3");
         });
         context.assertEquals(server, server.listen(8888, "myhost", future));
+        server.completion().get(5, TimeUnit.SECONDS);
         context.assertEquals(8888, server.actualPort());
         context.assertTrue(future.succeeded());
         context.assertEquals(server, future.result());
@@ -128,12 +144,13 @@ public class LambdaServerTest {
     }
 
     @Test
-    public void testListen4(TestContext context) {
+    public void testListen4(TestContext context) throws Exception {
         server.requestHandler(req -> {
             context.assertEquals("0.0.0.0", req.host());
             req.response().end("data4");
         });
         context.assertEquals(server, server.listen(8888));
+        server.completion().get(5, TimeUnit.SECONDS);
         context.assertEquals(8888, server.actualPort());
 
         JsonObject response = new JsonObject(outputData.toString());
@@ -141,13 +158,14 @@ public class LambdaServerTest {
     }
 
     @Test
-    public void testListen5(TestContext context) {
+    public void testListen5(TestContext context) throws Exception {
         Future<HttpServer> future = Future.future();
         server.requestHandler(req -> {
             context.assertEquals("0.0.0.0", req.host());
             req.response().end("data5");
         });
         context.assertEquals(server, server.listen(8888, future));
+        server.completion().get(5, TimeUnit.SECONDS);
         context.assertEquals(8888, server.actualPort());
         context.assertTrue(future.succeeded());
         context.assertEquals(server, future.result());
@@ -157,13 +175,14 @@ public class LambdaServerTest {
     }
 
     @Test
-    public void testListen6(TestContext context) {
+    public void testListen6(TestContext context) throws Exception {
         Future<HttpServer> future = Future.future();
         server.requestHandler(req -> {
             context.assertEquals("0.0.0.0", req.host());
             req.response().end("data6");
         });
         context.assertEquals(server, server.listen(future));
+        server.completion().get(5, TimeUnit.SECONDS);
         context.assertEquals(0, server.actualPort());
         context.assertTrue(future.succeeded());
         context.assertEquals(server, future.result());
@@ -172,6 +191,275 @@ public class LambdaServerTest {
         context.assertEquals("data6", new String(response.getBinary("body")));
     }
 
+    @Test
+    public void testProcessRequest(TestContext context) throws Exception {
+        server.requestHandler(req -> {
+            vertx.setTimer(10, id -> req.response().end("data7"));
+        });
+        CompletableFuture<Void> completion = server.processRequest();
+        context.assertEquals(completion, server.completion());
+        completion.get(5, TimeUnit.SECONDS);
+
+        JsonObject response = new JsonObject(outputData.toString());
+        context.assertEquals("data7", new String(response.getBinary("body")));
+    }
+
+    @Test
+    public void testProcessRequestInvalidInput(TestContext context) throws Exception {
+        outputData = new ByteArrayOutputStream();
+        server = new LambdaServer(vertx, null, new ByteArrayInputStream("invalid".getBytes()), outputData);
+        server.processRequest().get(5, TimeUnit.SECONDS);
+
+        JsonObject response = new JsonObject(outputData.toString());
+        context.assertEquals(500, response.getInteger("statusCode"));
+    }
+
+    @Test
+    public void testProcessRequestHandlerFailure(TestContext context) throws Exception {
+        // the error response is written once the failure has been reported
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        outputData = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed.complete(null);
+            }
+        };
+        InputStream inputData = this.getClass().getClassLoader().getResourceAsStream("request_basic.json");
+        server = new LambdaServer(vertx, null, inputData, outputData);
+        server.requestHandler(req -> {
+            throw new IllegalStateException("handler failure");
+        });
+        try {
+            server.processRequest().get(5, TimeUnit.SECONDS);
+            context.fail("The request handler failure hasn't been reported");
+        } catch (ExecutionException e) {
+            context.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        closed.get(5, TimeUnit.SECONDS);
+
+        JsonObject response = new JsonObject(outputData.toString());
+        context.assertEquals(500, response.getInteger("statusCode"));
+        context.assertEquals("Internal Server Error", new String(response.getBinary("body")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBodyChunkSize(TestContext context) {
+        server.setBodyChunkSize(2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testProcessRequestTwice(TestContext context) {
+        server.requestHandler(req -> req.response().end());
+        server.processRequest();
+        server.processRequest();
+    }
+
+    @Test
+    public void testDeadline(TestContext context) throws Exception {
+        outputData = new ByteArrayOutputStream();
+        InputStream inputData = this.getClass().getClassLoader().getResourceAsStream("request_basic.json");
+        server = new LambdaServer(vertx, new RuntimeContext("id", null, System.currentTimeMillis() + 10000),
+                inputData, outputData);
+        server.requestHandler(req -> {
+            long remaining = LambdaServer.remainingTimeMillis(req);
+            context.assertTrue(remaining > 9000 && remaining <= 10000);
+            req.response().end("data8");
+        });
+        server.processRequest().get(5, TimeUnit.SECONDS);
+
+        JsonObject response = new JsonObject(outputData.toString());
+        context.assertEquals(200, response.getInteger("statusCode"));
+    }
+
+    @Test
+    public void testDeadlineTimeout(TestContext context) throws Exception {
+        outputData = new ByteArrayOutputStream();
+        InputStream inputData = this.getClass().getClassLoader().getResourceAsStream("request_basic.json");
+        server = new LambdaServer(vertx, new RuntimeContext("id", null, System.currentTimeMillis() + 600),
+                inputData, outputData);
+        context.assertEquals(server, server.setTimeoutMargin(400));
+        context.assertEquals(400L, server.getTimeoutMargin());
+        server.requestHandler(req -> {
+            // never ends the response
+        });
+        server.processRequest().get(5, TimeUnit.SECONDS);
+
+        JsonObject response = new JsonObject(outputData.toString());
+        context.assertEquals(504, response.getInteger("statusCode"));
+    }
+
+    @Test
+    public void testTextResponse(TestContext context) throws Exception {
+        server.requestHandler(req -> {
+            req.response().putHeader("Content-Type", "application/json; charset=utf-8").end("{\"a\": \"é\"}");
+        });
+        server.listen();
+        server.completion().get(5, TimeUnit.SECONDS);
+
+        JsonObject response = new JsonObject(outputData.toString("UTF-8"));
+        context.assertFalse(response.getBoolean("isBase64Encoded"));
+        context.assertEquals("{\"a\": \"é\"}", response.getString("body"));
+    }
+
+    @Test
+    public void testBinaryMediaTypes(TestContext context) throws Exception {
+        context.assertEquals(server, server.setBinaryMediaTypes(Arrays.asList("text/csv")));
+        context.assertEquals(Arrays.asList("text/csv"), server.getBinaryMediaTypes());
+        context.assertEquals(MediaTypePolicy.DEFAULT_TEXT_MEDIA_TYPES, server.getTextMediaTypes());
+        server.requestHandler(req -> {
+            req.response().putHeader("Content-Type", "text/csv").end("a,b");
+        });
+        server.listen();
+        server.completion().get(5, TimeUnit.SECONDS);
+
+        JsonObject response = new JsonObject(outputData.toString());
+        context.assertTrue(response.getBoolean("isBase64Encoded"));
+        context.assertEquals("a,b", new String(response.getBinary("body")));
+    }
+
+    @Test
+    public void testNoTextMediaTypes(TestContext context) throws Exception {
+        server.setTextMediaTypes(Collections.emptyList());
+        server.requestHandler(req -> {
+            req.response().putHeader("Content-Type", "text/plain").end("text");
+        });
+        server.listen();
+        server.completion().get(5, TimeUnit.SECONDS);
+
+        JsonObject response = new JsonObject(outputData.toString());
+        context.assertTrue(response.getBoolean("isBase64Encoded"));
+    }
+
+    @Test
+    public void testAutoETag(TestContext context) throws Exception {
+        JsonObject first = autoETagResponse("GET", "");
+        context.assertTrue(server.isAutoETag());
+        String etag = first.getJsonObject("headers").getString("ETag");
+        context.assertTrue(etag.startsWith("W/\""));
+        context.assertEquals(200, first.getInteger("statusCode"));
+
+        JsonObject second = autoETagResponse("GET", etag);
+        context.assertEquals(304, second.getInteger("statusCode"));
+        context.assertEquals(etag, second.getJsonObject("headers").getString("ETag"));
+        context.assertEquals("", second.getString("body"));
+
+        JsonObject post = autoETagResponse("POST", etag);
+        context.assertEquals(200, post.getInteger("statusCode"));
+        context.assertNull(post.getJsonObject("headers").getString("ETag"));
+    }
+
+    private JsonObject autoETagResponse(String method, String ifNoneMatch) throws Exception {
+        outputData = new ByteArrayOutputStream();
+        String event = "{\"httpMethod\": \"" + method + "\", \"path\": \"/\", \"headers\": {\"If-None-Match\": \""
+                + ifNoneMatch.replace("\"", "\\\"") + "\"}}";
+        server = new LambdaServer(vertx, null, new ByteArrayInputStream(event.getBytes()), outputData);
+        server.setAutoETag(true);
+        server.requestHandler(req -> {
+            req.response().putHeader("Content-Type", "text/plain").end("some text");
+        });
+        server.listen();
+        server.completion().get(5, TimeUnit.SECONDS);
+        return new JsonObject(outputData.toString());
+    }
+
+    @Test
+    public void testResponseOffload(TestContext context) throws Exception {
+        File directory = Files.createTempDirectory("offload").toFile();
+        directory.deleteOnExit();
+        ResponseOffload offload = new FileSystemResponseOffload(vertx, directory.getPath(), "https://example.com/");
+        context.assertEquals(server, server.setResponseOffload(offload).setBodySpillThreshold(1024 * 1024));
+        context.assertEquals(offload, server.getResponseOffload());
+        context.assertEquals(1024 * 1024, server.getBodySpillThreshold());
+        context.assertEquals(System.getProperty("java.io.tmpdir"), server.getBodySpillDirectory());
+        byte[] chunk = new byte[64 * 1024];
+        new Random(1).nextBytes(chunk);
+        int chunks = 80;
+        server.requestHandler(req -> {
+            HttpServerResponse response = req.response().setChunked(true);
+            response.putHeader("Content-Type", "application/octet-stream");
+            for (int i = 0; i < chunks; i++) {
+                response.write(Buffer.buffer(chunk));
+            }
+            response.end();
+        });
+        server.listen();
+        server.completion().get(10, TimeUnit.SECONDS);
+
+        JsonObject response = new JsonObject(outputData.toString());
+        JsonObject headers = response.getJsonObject("headers");
+        context.assertEquals(303, response.getInteger("statusCode"));
+        context.assertNull(headers.getString("Content-Type"));
+        String location = headers.getString("Location");
+        context.assertTrue(location.startsWith("https://example.com/"));
+        File file = new File(directory, location.substring("https://example.com/".length()));
+        file.deleteOnExit();
+        byte[] offloaded = Files.readAllBytes(file.toPath());
+        context.assertEquals(chunk.length * chunks, offloaded.length);
+        context.assertTrue(Arrays.equals(chunk, Arrays.copyOfRange(offloaded, chunk.length * 5, chunk.length * 6)));
+    }
+
+    @Test
+    public void testCompression(TestContext context) throws Exception {
+        outputData = new ByteArrayOutputStream();
+        String event = "{\"httpMethod\": \"GET\", \"path\": \"/\", \"headers\": {\"Accept-Encoding\": \"deflate\"}}";
+        server = new LambdaServer(vertx, null, new ByteArrayInputStream(event.getBytes()), outputData);
+        context.assertEquals(server, server.setCompressionSupported(true).setCompressionLevel(9)
+                .setCompressionMinSize(10).setCompressibleMediaTypes(Arrays.asList("text/plain")));
+        context.assertTrue(server.isCompressionSupported());
+        context.assertEquals(9, server.getCompressionLevel());
+        context.assertEquals(10, server.getCompressionMinSize());
+        context.assertEquals(Arrays.asList("text/plain"), server.getCompressibleMediaTypes());
+        server.requestHandler(req -> {
+            req.response().putHeader("Content-Type", "text/plain").end("some text, some text, some text");
+        });
+        server.listen();
+        server.completion().get(5, TimeUnit.SECONDS);
+
+        JsonObject response = new JsonObject(outputData.toString());
+        context.assertEquals("deflate", response.getJsonObject("headers").getString("Content-Encoding"));
+        context.assertTrue(response.getBoolean("isBase64Encoded"));
+    }
+
+    @Test
+    public void testResponseStreaming(TestContext context) throws Exception {
+        context.assertEquals(server, server.setResponseStreaming(true));
+        context.assertTrue(server.isResponseStreaming());
+        server.requestHandler(req -> {
+            req.response().setChunked(true).write("chunk1 ");
+            vertx.setTimer(10, id -> req.response().end("chunk2"));
+        });
+        server.processRequest().get(5, TimeUnit.SECONDS);
+
+        String output = outputData.toString();
+        int delimiter = output.indexOf('\0');
+        JsonObject prelude = new JsonObject(output.substring(0, delimiter));
+        context.assertEquals(200, prelude.getInteger("statusCode"));
+        context.assertEquals("\0\0\0\0\0\0\0\0chunk1 chunk2", output.substring(delimiter));
+    }
+
+    @Test
+    public void testResponseStreamingInvalidInput(TestContext context) throws Exception {
+        outputData = new ByteArrayOutputStream();
+        server = new LambdaServer(vertx, null, new ByteArrayInputStream("invalid".getBytes()), outputData);
+        server.setResponseStreaming(true);
+        server.processRequest().get(5, TimeUnit.SECONDS);
+
+        String output = outputData.toString();
+        JsonObject prelude = new JsonObject(output.substring(0, output.indexOf('\0')));
+        context.assertEquals(500, prelude.getInteger("statusCode"));
+        context.assertTrue(output.endsWith("Failed to decode the Lambda request"));
+    }
+
+    @Test
+    public void testNoDeadline(TestContext context) throws Exception {
+        server.requestHandler(req -> {
+            context.assertEquals(Long.MAX_VALUE, LambdaServer.remainingTimeMillis(req));
+            req.response().end();
+        });
+        server.listen();
+        server.completion().get(5, TimeUnit.SECONDS);
+    }
+
     @Test
     public void testClose(TestContext context) {
         // test that no exception is thrown
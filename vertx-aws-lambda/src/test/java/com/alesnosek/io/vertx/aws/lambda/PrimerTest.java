@@ -0,0 +1,81 @@
+package com.alesnosek.io.vertx.aws.lambda;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class PrimerTest {
+
+    Vertx vertx;
+    int handled;
+
+    @Before
+    public void before(TestContext context) {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void after(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testPrime(TestContext context) throws IOException {
+        Primer primer = new Primer(vertx, req -> {
+            handled++;
+            req.response().end("data");
+        });
+        context.assertFalse(primer.hasEvents());
+        primer.addResource("request_basic.json").addResource("request_path.json").setIterations(3);
+        context.assertTrue(primer.hasEvents());
+        context.assertTrue(primer.prime() >= 0);
+        context.assertEquals(6, handled);
+    }
+
+    @Test
+    public void testPrimeAsyncResponse(TestContext context) throws IOException {
+        Primer primer = new Primer(vertx, req -> {
+            vertx.setTimer(10, id -> {
+                handled++;
+                req.response().end("data");
+            });
+        });
+        primer.addResource("request_basic.json").prime();
+        context.assertEquals(1, handled);
+    }
+
+    @Test
+    public void testPrimeFailingHandler(TestContext context) throws IOException {
+        Primer primer = new Primer(vertx, req -> {
+            handled++;
+            throw new IllegalStateException("failure");
+        });
+        primer.addResource("request_basic.json").setTimeout(100, TimeUnit.MILLISECONDS).prime();
+        context.assertEquals(1, handled);
+    }
+
+    @Test
+    public void testPrimeInvalidEvent(TestContext context) {
+        Primer primer = new Primer(vertx, req -> {
+            handled++;
+        });
+        primer.addEvent(Buffer.buffer("not json")).prime();
+        context.assertEquals(0, handled);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingResource(TestContext context) throws IOException {
+        new Primer(vertx, req -> {
+        }).addResource("missing.json");
+    }
+}
@@ -0,0 +1,112 @@
+package com.alesnosek.io.vertx.aws.lambda;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.alesnosek.io.vertx.aws.lambda.StaticAssetCache.Asset;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class StaticAssetCacheTest {
+
+    @Test
+    public void testCached(TestContext context) throws IOException {
+        StaticAssetCache cache = new StaticAssetCache();
+        File file = createFile(".txt", "Some file content");
+        Asset asset = cache.get(file);
+        context.assertEquals(Buffer.buffer("Some file content"), asset.content());
+        context.assertTrue(asset == cache.get(file));
+        context.assertEquals(1, cache.entries());
+        context.assertEquals(17L, cache.size());
+    }
+
+    @Test
+    public void testGzipVariant(TestContext context) throws IOException {
+        StaticAssetCache cache = new StaticAssetCache();
+        String content = String.join("", Collections.nCopies(100, "Some file content "));
+        Asset text = cache.get(createFile(".txt", content));
+        context.assertNotNull(text.gzipContent());
+        context.assertTrue(text.gzipContent().length() < content.length());
+        context.assertNotEquals(text.etag(false), text.etag(true));
+
+        Asset binary = cache.get(createFile(".png", content));
+        context.assertNull(binary.gzipContent());
+    }
+
+    @Test
+    public void testETag(TestContext context) throws IOException {
+        StaticAssetCache cache = new StaticAssetCache();
+        Asset asset1 = cache.get(createFile(".txt", "Some file content"));
+        Asset asset2 = cache.get(createFile(".txt", "Some file content"));
+        Asset asset3 = cache.get(createFile(".txt", "Other file content"));
+        context.assertEquals(asset1.etag(false), asset2.etag(false));
+        context.assertNotEquals(asset1.etag(false), asset3.etag(false));
+        context.assertTrue(asset1.etag(false).startsWith("\"") && asset1.etag(false).endsWith("\""));
+    }
+
+    @Test
+    public void testMatches(TestContext context) throws IOException {
+        Asset asset = new StaticAssetCache().get(createFile(".txt", "Some file content"));
+        String etag = asset.etag(false);
+        context.assertTrue(asset.matches(etag));
+        context.assertTrue(asset.matches("\"other\", W/" + etag));
+        context.assertTrue(asset.matches("*"));
+        context.assertFalse(asset.matches("\"other\""));
+        context.assertFalse(asset.matches(null));
+    }
+
+    @Test
+    public void testReloadModified(TestContext context) throws IOException {
+        StaticAssetCache cache = new StaticAssetCache();
+        File file = createFile(".txt", "Some file content");
+        Asset asset1 = cache.get(file);
+        Files.write(file.toPath(), "Modified content".getBytes(StandardCharsets.UTF_8));
+        Asset asset2 = cache.get(file);
+        context.assertEquals(Buffer.buffer("Modified content"), asset2.content());
+        context.assertNotEquals(asset1.etag(false), asset2.etag(false));
+        context.assertEquals(1, cache.entries());
+        context.assertEquals(16L, cache.size());
+    }
+
+    @Test
+    public void testTooLarge(TestContext context) throws IOException {
+        StaticAssetCache cache = new StaticAssetCache(100, 10);
+        context.assertNull(cache.get(createFile(".txt", "Some file content")));
+        context.assertEquals(0, cache.entries());
+    }
+
+    @Test
+    public void testEviction(TestContext context) throws IOException {
+        StaticAssetCache cache = new StaticAssetCache(40, 20);
+        File file1 = createFile(".bin", "Some file content 1");
+        File file2 = createFile(".bin", "Some file content 2");
+        File file3 = createFile(".bin", "Some file content 3");
+        cache.get(file1);
+        cache.get(file2);
+        // file1 becomes the most recently used
+        cache.get(file1);
+        cache.get(file3);
+        context.assertEquals(2, cache.entries());
+        context.assertEquals(38L, cache.size());
+
+        Asset asset1 = cache.get(file1);
+        context.assertTrue(asset1 == cache.get(file1));
+        context.assertEquals(2, cache.entries());
+    }
+
+    private static File createFile(String suffix, String content) throws IOException {
+        File file = File.createTempFile("static-asset", suffix);
+        file.deleteOnExit();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,114 @@
+package com.alesnosek.io.vertx.aws.lambda.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.alesnosek.io.vertx.aws.lambda.impl.CaseSensitiveMultiMapImpl;
+
+import io.vertx.core.MultiMap;
+
+/**
+ * Compares the original CaseSensitiveMultiMapImpl (a fixed table of 17
+ * buckets, sorting the names on size()) with the current one when holding
+ * query parameters: building the map, looking up the parameters, size() and
+ * iterating the entries.
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.alesnosek.io.vertx.aws.lambda.benchmark.CaseSensitiveMultiMapBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaseSensitiveMultiMapBenchmark {
+
+    @Param({ "legacy", "current" })
+    String implementation;
+
+    @Param({ "4", "16", "64" })
+    int names;
+
+    String[] parameterNames;
+    MultiMap map;
+
+    @Setup
+    public void setup() {
+        parameterNames = new String[names];
+        for (int i = 0; i < names; i++) {
+            parameterNames[i] = "param" + i;
+        }
+        map = build();
+    }
+
+    private MultiMap newMap() {
+        return implementation.equals("legacy") ? new LegacyCaseSensitiveMultiMap() : new CaseSensitiveMultiMapImpl();
+    }
+
+    @Benchmark
+    public MultiMap build() {
+        MultiMap multiMap = newMap();
+        for (String name : parameterNames) {
+            multiMap.add(name, "value");
+        }
+        // every fourth parameter is repeated, as in ?tag=a&tag=b
+        for (int i = 0; i < parameterNames.length; i += 4) {
+            multiMap.add(parameterNames[i], "other");
+        }
+        return multiMap;
+    }
+
+    @Benchmark
+    public void get(Blackhole blackhole) {
+        for (String name : parameterNames) {
+            blackhole.consume(map.get(name));
+        }
+    }
+
+    @Benchmark
+    public void getAll(Blackhole blackhole) {
+        for (String name : parameterNames) {
+            List<String> values = map.getAll(name);
+            blackhole.consume(values);
+        }
+    }
+
+    @Benchmark
+    public int size() {
+        return map.size();
+    }
+
+    @Benchmark
+    public int names() {
+        return map.names().size();
+    }
+
+    @Benchmark
+    public void entries(Blackhole blackhole) {
+        for (Map.Entry<String, String> entry : map) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CaseSensitiveMultiMapBenchmark.class.getSimpleName()).build()).run();
+    }
+}
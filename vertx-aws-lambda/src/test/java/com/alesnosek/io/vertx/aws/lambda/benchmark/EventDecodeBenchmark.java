@@ -0,0 +1,82 @@
+package com.alesnosek.io.vertx.aws.lambda.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.alesnosek.io.vertx.aws.lambda.impl.LambdaEvent;
+import com.alesnosek.io.vertx.aws.lambda.impl.LambdaEventDecoder;
+
+/**
+ * Compares decoding a Lambda event straight from the input stream with
+ * reading the whole stream into an array first and decoding the array (the
+ * approach of the former pooled InputBuffer).
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.alesnosek.io.vertx.aws.lambda.benchmark.EventDecodeBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDecodeBenchmark {
+
+    @Param({ "1024", "102400", "4194304" })
+    int bodySize;
+
+    byte[] event;
+
+    @Setup
+    public void setup() {
+        char[] body = new char[bodySize];
+        Arrays.fill(body, 'x');
+        event = ("{\"path\": \"/path\", \"httpMethod\": \"POST\", \"headers\": {\"Content-Type\": \"text/plain\"}, "
+                + "\"queryStringParameters\": {\"p1\": \"1\"}, \"requestContext\": {\"stage\": \"prod\"}, "
+                + "\"body\": \"" + new String(body) + "\", \"isBase64Encoded\": false}")
+                        .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public LambdaEvent stream() throws IOException {
+        return LambdaEventDecoder.decode(new ByteArrayInputStream(event));
+    }
+
+    @Benchmark
+    public LambdaEvent copy() throws IOException {
+        InputStream input = new ByteArrayInputStream(event);
+        byte[] data = new byte[Math.max(input.available(), 4096)];
+        int length = 0;
+        int read;
+        while ((read = input.read(data, length, data.length - length)) != -1) {
+            length += read;
+            if (length == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+        }
+        return LambdaEventDecoder.decode(new ByteArrayInputStream(data, 0, length));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EventDecodeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
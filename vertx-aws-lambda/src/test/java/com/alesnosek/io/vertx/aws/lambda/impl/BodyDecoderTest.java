@@ -0,0 +1,64 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.util.Base64;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class BodyDecoderTest {
+
+    @Test
+    public void testNoBody(TestContext context) {
+        BodyDecoder decoder = new BodyDecoder(null, false, 10);
+        context.assertFalse(decoder.hasNext());
+    }
+
+    @Test
+    public void testText(TestContext context) {
+        BodyDecoder decoder = new BodyDecoder("request line 1\nrequest line 2", false, 10);
+        context.assertEquals("request li", decoder.next().toString());
+        context.assertEquals("ne 1\nreque", decoder.next().toString());
+        context.assertEquals("st line 2", decoder.next().toString());
+        context.assertFalse(decoder.hasNext());
+    }
+
+    @Test
+    public void testTextSurrogatePair(TestContext context) {
+        String body = "ab😀cd";
+        BodyDecoder decoder = new BodyDecoder(body, false, 3);
+        Buffer decoded = Buffer.buffer();
+        while (decoder.hasNext()) {
+            decoded.appendBuffer(decoder.next());
+        }
+        context.assertEquals(body, decoded.toString("UTF-8"));
+    }
+
+    @Test
+    public void testBase64(TestContext context) {
+        byte[] data = new byte[1000];
+        new Random(42).nextBytes(data);
+        BodyDecoder decoder = new BodyDecoder(Base64.getEncoder().encodeToString(data), true, 300);
+
+        Buffer decoded = Buffer.buffer();
+        int chunks = 0;
+        while (decoder.hasNext()) {
+            Buffer chunk = decoder.next();
+            context.assertTrue(chunk.length() <= 300);
+            decoded.appendBuffer(chunk);
+            chunks++;
+        }
+        context.assertEquals(4, chunks);
+        context.assertEquals(Buffer.buffer(data), decoded);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBase64(TestContext context) {
+        new BodyDecoder("not base64!", true, 300).next();
+    }
+}
@@ -0,0 +1,65 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.alesnosek.io.vertx.aws.lambda.impl.ByteRanges.ByteRange;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class ByteRangesTest {
+
+    @Test
+    public void testSingleRange(TestContext context) {
+        context.assertEquals("[0-499]", ByteRanges.parse("bytes=0-499", 1000).toString());
+        context.assertEquals("[500-999]", ByteRanges.parse("bytes=500-", 1000).toString());
+        context.assertEquals("[900-999]", ByteRanges.parse("bytes=-100", 1000).toString());
+        context.assertEquals("[0-999]", ByteRanges.parse("bytes=-2000", 1000).toString());
+        context.assertEquals("[990-999]", ByteRanges.parse(" Bytes=990-2000 ", 1000).toString());
+    }
+
+    @Test
+    public void testMultipleRanges(TestContext context) {
+        context.assertEquals("[0-0, 10-19, 999-999]", ByteRanges.parse("bytes=0-0, 10-19,-1", 1000).toString());
+    }
+
+    @Test
+    public void testNotSatisfiable(TestContext context) {
+        context.assertTrue(ByteRanges.parse("bytes=1000-", 1000).isEmpty());
+        context.assertTrue(ByteRanges.parse("bytes=-0", 1000).isEmpty());
+        context.assertTrue(ByteRanges.parse("bytes=0-10", 0).isEmpty());
+        context.assertEquals("[0-9]", ByteRanges.parse("bytes=2000-3000,0-9", 1000).toString());
+    }
+
+    @Test
+    public void testIgnored(TestContext context) {
+        context.assertNull(ByteRanges.parse("items=0-10", 1000));
+        context.assertNull(ByteRanges.parse("bytes=", 1000));
+        context.assertNull(ByteRanges.parse("bytes=-", 1000));
+        context.assertNull(ByteRanges.parse("bytes=10-5", 1000));
+        context.assertNull(ByteRanges.parse("bytes=a-5", 1000));
+        context.assertNull(ByteRanges.parse("bytes=5-+7", 1000));
+        context.assertNull(ByteRanges.parse("bytes=99999999999999999999-", 1000));
+        StringBuilder tooMany = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= ByteRanges.MAX_RANGES; i++) {
+            tooMany.append(',').append(i).append('-').append(i);
+        }
+        context.assertNull(ByteRanges.parse(tooMany.toString(), 1000));
+    }
+
+    @Test
+    public void testMultipart(TestContext context) {
+        List<ByteRange> ranges = ByteRanges.parse("bytes=0-1,4-5", 10);
+        Buffer body = ByteRanges.multipart(ranges, Arrays.asList(Buffer.buffer("ab"), Buffer.buffer("ef")),
+                "text/plain", 10, "XYZ");
+        context.assertEquals("\r\n--XYZ\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-1/10\r\n\r\nab"
+                + "\r\n--XYZ\r\nContent-Type: text/plain\r\nContent-Range: bytes 4-5/10\r\n\r\nef"
+                + "\r\n--XYZ--\r\n", body.toString());
+    }
+}
@@ -0,0 +1,125 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.MultiMap;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class CaseSensitiveMultiMapImplTest {
+
+    @Test
+    public void testAdd(TestContext context) {
+        MultiMap map = new CaseSensitiveMultiMapImpl();
+        context.assertTrue(map.isEmpty());
+        map.add("tag", "a").add("Tag", "b").add("tag", "c");
+
+        context.assertFalse(map.isEmpty());
+        context.assertEquals(2, map.size());
+        context.assertEquals("a", map.get("tag"));
+        context.assertEquals(Arrays.asList("a", "c"), map.getAll("tag"));
+        context.assertEquals(Arrays.asList("b"), map.getAll("Tag"));
+        context.assertTrue(map.contains("Tag"));
+        context.assertFalse(map.contains("TAG"));
+        context.assertNull(map.get("TAG"));
+        context.assertTrue(map.getAll("TAG").isEmpty());
+    }
+
+    @Test
+    public void testInsertionOrder(TestContext context) {
+        MultiMap map = new CaseSensitiveMultiMapImpl();
+        map.add("z", "1").add("a", "2").add("m", "3").add("z", "4");
+
+        context.assertEquals(Arrays.asList("z", "a", "m"), new ArrayList<>(map.names()));
+        List<String> entries = new ArrayList<>();
+        for (Map.Entry<String, String> entry : map) {
+            entries.add(entry.toString());
+        }
+        context.assertEquals(Arrays.asList("z: 1", "z: 4", "a: 2", "m: 3"), entries);
+        context.assertEquals(4, map.entries().size());
+        context.assertEquals("z: 1\nz: 4\na: 2\nm: 3\n", map.toString());
+    }
+
+    @Test
+    public void testGrow(TestContext context) {
+        MultiMap map = new CaseSensitiveMultiMapImpl();
+        for (int i = 0; i < 1000; i++) {
+            map.add("name" + i, "value" + i);
+        }
+        context.assertEquals(1000, map.size());
+        for (int i = 0; i < 1000; i++) {
+            context.assertEquals("value" + i, map.get("name" + i));
+        }
+        context.assertEquals("name0", map.names().iterator().next());
+    }
+
+    @Test
+    public void testSet(TestContext context) {
+        MultiMap map = new CaseSensitiveMultiMapImpl();
+        map.add("a", "1").add("b", "2").add("b", "3").add("c", "4");
+
+        map.set("b", "5");
+        context.assertEquals(Arrays.asList("5"), map.getAll("b"));
+        context.assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<>(map.names()));
+        context.assertEquals(3, map.entries().size());
+
+        map.set("b", Arrays.<String>asList("6", null, "7"));
+        context.assertEquals(Arrays.asList("6"), map.getAll("b"));
+
+        map.set("b", Collections.<String>emptyList());
+        context.assertFalse(map.contains("b"));
+        context.assertEquals(2, map.size());
+        context.assertEquals(2, map.entries().size());
+    }
+
+    @Test
+    public void testRemove(TestContext context) {
+        MultiMap map = new CaseSensitiveMultiMapImpl();
+        for (int i = 0; i < 20; i++) {
+            map.add("name" + i, "value");
+        }
+        for (int i = 0; i < 20; i += 2) {
+            map.remove("name" + i);
+        }
+        map.remove("missing");
+
+        context.assertEquals(10, map.size());
+        context.assertFalse(map.contains("name0"));
+        context.assertTrue(map.contains("name1"));
+        context.assertEquals("name1", map.names().iterator().next());
+
+        map.add("name0", "again");
+        context.assertEquals(11, map.size());
+        context.assertEquals(Arrays.asList("again"), map.getAll("name0"));
+
+        map.clear();
+        context.assertTrue(map.isEmpty());
+        context.assertEquals(0, map.size());
+        context.assertFalse(map.iterator().hasNext());
+    }
+
+    @Test
+    public void testSetValue(TestContext context) {
+        MultiMap map = new CaseSensitiveMultiMapImpl();
+        map.add("a", "1").add("a", "2");
+        map.entries().get(1).setValue("3");
+        context.assertEquals(Arrays.asList("1", "3"), map.getAll("a"));
+    }
+
+    @Test
+    public void testGetAllCopy(TestContext context) {
+        MultiMap map = new CaseSensitiveMultiMapImpl();
+        map.add("a", "1");
+        List<String> values = map.getAll("a");
+        map.add("a", "2");
+        context.assertEquals(Arrays.asList("1"), values);
+    }
+}
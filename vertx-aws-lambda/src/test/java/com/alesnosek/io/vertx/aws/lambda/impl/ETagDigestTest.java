@@ -0,0 +1,41 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class ETagDigestTest {
+
+    @Test
+    public void testIncremental(TestContext context) {
+        ETagDigest whole = new ETagDigest();
+        whole.update(Buffer.buffer("Some data"));
+        ETagDigest incremental = new ETagDigest();
+        incremental.update(Buffer.buffer("Some "));
+        incremental.update(Buffer.buffer(Unpooled.wrappedBuffer(Unpooled.wrappedBuffer("da".getBytes()),
+                Unpooled.wrappedBuffer("ta".getBytes()))));
+        String hash = whole.hash();
+        context.assertEquals(hash, incremental.hash());
+        context.assertEquals(22, hash.length());
+
+        ETagDigest other = new ETagDigest();
+        other.update(Buffer.buffer("Other data"));
+        context.assertNotEquals(hash, other.hash());
+    }
+
+    @Test
+    public void testMatches(TestContext context) {
+        context.assertTrue(ETagDigest.matches("\"a\"", "\"a\""));
+        context.assertTrue(ETagDigest.matches("\"b\", W/\"a\"", "\"a\""));
+        context.assertTrue(ETagDigest.matches("\"a\"", "W/\"a\""));
+        context.assertTrue(ETagDigest.matches("*", "\"a\""));
+        context.assertFalse(ETagDigest.matches("\"b\"", "\"a\""));
+        context.assertFalse(ETagDigest.matches(null, "\"a\""));
+        context.assertFalse(ETagDigest.matches("\"a\"", null));
+    }
+}
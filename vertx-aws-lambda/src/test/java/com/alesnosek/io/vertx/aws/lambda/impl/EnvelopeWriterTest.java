@@ -0,0 +1,102 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class EnvelopeWriterTest {
+
+    @Test
+    public void testEnvelope(TestContext context) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", "text/plain");
+        headers.put("X-Quote", "a \"b\" \\ cé€😀");
+        JsonObject json = write(201, headers, Buffer.buffer("hello"), true);
+        context.assertEquals(201, json.getInteger("statusCode"));
+        context.assertTrue(json.getBoolean("isBase64Encoded"));
+        context.assertEquals("hello", new String(json.getBinary("body")));
+        context.assertEquals(new JsonObject().put("Content-Type", "text/plain").put("X-Quote",
+                "a \"b\" \\ cé€😀"), json.getJsonObject("headers"));
+    }
+
+    @Test
+    public void testEmptyBody(TestContext context) throws IOException {
+        JsonObject json = write(204, Collections.emptyMap(), Buffer.buffer(), true);
+        context.assertEquals("", json.getString("body"));
+        context.assertTrue(json.getJsonObject("headers").isEmpty());
+    }
+
+    @Test
+    public void testBase64Padding(TestContext context) throws IOException {
+        for (int length = 0; length < 8; length++) {
+            byte[] data = new byte[length];
+            new Random(length).nextBytes(data);
+            JsonObject json = write(200, Collections.emptyMap(), Buffer.buffer(data), true);
+            context.assertEquals(Base64.getEncoder().encodeToString(data), json.getString("body"));
+        }
+    }
+
+    @Test
+    public void testLargeBody(TestContext context) throws IOException {
+        byte[] data = new byte[5 * EnvelopeWriter.BLOCK_SIZE + 1];
+        new Random().nextBytes(data);
+        JsonObject json = write(200, Collections.emptyMap(), Buffer.buffer(data), true);
+        context.assertTrue(Buffer.buffer(data).equals(Buffer.buffer(json.getBinary("body"))));
+    }
+
+    @Test
+    public void testTextBody(TestContext context) throws IOException {
+        String text = "line 1\nline \"2\"\t\\ \u0001 é€😀";
+        JsonObject json = write(500, Collections.emptyMap(), Buffer.buffer(text), false);
+        context.assertFalse(json.getBoolean("isBase64Encoded"));
+        context.assertEquals(text, json.getString("body"));
+    }
+
+    @Test
+    public void testLargeTextBody(TestContext context) throws IOException {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 3 * EnvelopeWriter.BLOCK_SIZE) {
+            text.append("\"quoted\" € ");
+        }
+        JsonObject json = write(200, Collections.emptyMap(), Buffer.buffer(text.toString()), false);
+        context.assertEquals(text.toString(), json.getString("body"));
+    }
+
+    @Test
+    public void testPrelude(TestContext context) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new EnvelopeWriter(output).writePrelude(200, Collections.singletonMap("Content-Type", "text/plain"),
+                Arrays.asList("a=1", "b=2"));
+        byte[] data = output.toByteArray();
+        int length = data.length - EnvelopeWriter.PRELUDE_DELIMITER_LENGTH;
+        for (int i = length; i < data.length; i++) {
+            context.assertEquals((byte) 0, data[i]);
+        }
+        JsonObject prelude = new JsonObject(new String(data, 0, length, "UTF-8"));
+        context.assertEquals(200, prelude.getInteger("statusCode"));
+        context.assertEquals("text/plain", prelude.getJsonObject("headers").getString("Content-Type"));
+        context.assertEquals(new JsonArray().add("a=1").add("b=2"), prelude.getJsonArray("cookies"));
+    }
+
+    private JsonObject write(int statusCode, Map<String, String> headers, Buffer body, boolean base64)
+            throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new EnvelopeWriter(output).write(statusCode, headers, body, base64);
+        return new JsonObject(output.toString("UTF-8"));
+    }
+}
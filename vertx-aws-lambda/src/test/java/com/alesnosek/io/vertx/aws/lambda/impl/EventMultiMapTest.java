@@ -0,0 +1,87 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.MultiMap;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class EventMultiMapTest {
+
+    List<String> entries = Arrays.asList("Accept", "text/html", "X-Forwarded-For", "192.0.2.1", "accept",
+            "application/json");
+
+    @Test
+    public void testGetCaseInsensitive(TestContext context) {
+        MultiMap map = new EventMultiMap(entries, true);
+        context.assertEquals("text/html", map.get("ACCEPT"));
+        context.assertEquals("192.0.2.1", map.get("x-forwarded-for"));
+        context.assertEquals(Arrays.asList("text/html", "application/json"), map.getAll("Accept"));
+        context.assertTrue(map.contains("X-FORWARDED-FOR"));
+        context.assertFalse(map.contains("Host"));
+        context.assertNull(map.get("Host"));
+        context.assertTrue(map.getAll("Host").isEmpty());
+        context.assertEquals(2, map.size());
+        context.assertEquals(2, map.names().size());
+    }
+
+    @Test
+    public void testGetCaseSensitive(TestContext context) {
+        MultiMap map = new EventMultiMap(entries, false);
+        context.assertEquals("text/html", map.get("Accept"));
+        context.assertEquals("application/json", map.get("accept"));
+        context.assertNull(map.get("ACCEPT"));
+        context.assertEquals(Arrays.asList("text/html"), map.getAll("Accept"));
+        context.assertEquals(3, map.size());
+        context.assertEquals(3, map.names().size());
+    }
+
+    @Test
+    public void testEmpty(TestContext context) {
+        MultiMap map = new EventMultiMap(new ArrayList<>(), true);
+        context.assertTrue(map.isEmpty());
+        context.assertEquals(0, map.size());
+        context.assertNull(map.get("Accept"));
+        context.assertFalse(map.iterator().hasNext());
+    }
+
+    @Test
+    public void testIteration(TestContext context) {
+        MultiMap map = new EventMultiMap(entries, true);
+        List<String> iterated = new ArrayList<>();
+        for (Map.Entry<String, String> entry : map) {
+            iterated.add(entry.getKey());
+            iterated.add(entry.getValue());
+        }
+        context.assertEquals(entries, iterated);
+        context.assertEquals(3, map.entries().size());
+        context.assertEquals("X-Forwarded-For", map.entries().get(1).getKey());
+    }
+
+    @Test
+    public void testCopyOnWrite(TestContext context) {
+        List<String> original = new ArrayList<>(entries);
+        MultiMap map = new EventMultiMap(original, true);
+        map.set("Accept", "*/*");
+        map.add("Host", "example.com");
+        context.assertEquals("*/*", map.get("accept"));
+        context.assertEquals(1, map.getAll("accept").size());
+        context.assertEquals("example.com", map.get("host"));
+        context.assertEquals(3, map.size());
+        context.assertEquals(3, map.entries().size());
+        // the decoded event isn't modified
+        context.assertEquals(entries, original);
+
+        map.remove("Host");
+        context.assertFalse(map.contains("Host"));
+        map.clear();
+        context.assertTrue(map.isEmpty());
+    }
+}
@@ -0,0 +1,65 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class FileContentTest {
+
+    byte[] data;
+    File file;
+
+    @Before
+    public void before(TestContext context) throws IOException {
+        data = new byte[FileContent.MAP_THRESHOLD * 2 + 7];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        file = File.createTempFile("file-content", ".bin");
+        file.deleteOnExit();
+        Files.write(file.toPath(), data);
+    }
+
+    @Test
+    public void testMapped(TestContext context) throws IOException {
+        Buffer content = FileContent.read(file, 0, Long.MAX_VALUE);
+        context.assertTrue(content.getByteBuf().isDirect());
+        context.assertEquals(Buffer.buffer(data), content);
+    }
+
+    @Test
+    public void testMappedRegion(TestContext context) throws IOException {
+        int offset = 3;
+        int length = FileContent.MAP_THRESHOLD + 1;
+        Buffer content = FileContent.read(file, offset, length);
+        context.assertEquals(Buffer.buffer(data).getBuffer(offset, offset + length), content);
+    }
+
+    @Test
+    public void testHeapRegion(TestContext context) throws IOException {
+        Buffer content = FileContent.read(file, 100, 50);
+        context.assertFalse(content.getByteBuf().isDirect());
+        context.assertEquals(Buffer.buffer(data).getBuffer(100, 150), content);
+    }
+
+    @Test
+    public void testRegionPastEnd(TestContext context) throws IOException {
+        Buffer content = FileContent.read(file, data.length - 5, 100);
+        context.assertEquals(Buffer.buffer(data).getBuffer(data.length - 5, data.length), content);
+        context.assertEquals(0, FileContent.read(file, data.length + 10, 100).length());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeOffset(TestContext context) throws IOException {
+        FileContent.read(file, -1, 10);
+    }
+}
@@ -1,8 +1,12 @@
 package com.alesnosek.io.vertx.aws.lambda.impl;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
 
@@ -14,12 +18,15 @@ import org.junit.runner.RunWith;
 import com.alesnosek.io.vertx.aws.lambda.impl.HttpServerRequestImpl;
 import com.alesnosek.io.vertx.aws.lambda.impl.HttpServerResponseImpl;
 
+import io.vertx.core.Context;
 import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpVersion;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.net.SocketAddress;
+import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 
@@ -32,15 +39,21 @@ public class HttpServerRequestImplTest {
     ByteArrayOutputStream responseOutput = new ByteArrayOutputStream();
     HttpServerResponseImpl response;
 
-    static JsonObject requestBasic;
-    static JsonObject requestPath;
-    static JsonObject requestPathMultiple;
+    static LambdaEvent requestBasic;
+    static LambdaEvent requestPath;
+    static LambdaEvent requestPathMultiple;
+    static LambdaEvent requestFull;
+    static LambdaEvent requestRaw;
+    static LambdaEvent requestMultiValue;
 
     @BeforeClass
     public static void beforeClass() throws IOException {
         requestBasic = loadData("request_basic.json");
         requestPath = loadData("request_path.json");
         requestPathMultiple = loadData("request_path_multiple.json");
+        requestFull = loadData("request_full.json");
+        requestRaw = loadData("request_raw.json");
+        requestMultiValue = loadData("request_multi_value.json");
     }
 
     @Before
@@ -248,6 +261,16 @@ public class HttpServerRequestImplTest {
         context.assertNull(request.connection());
     }
 
+    @Test
+    public void testDeadline(TestContext context) {
+        context.assertEquals(Long.MAX_VALUE, request.deadline());
+        context.assertEquals(Long.MAX_VALUE, request.remainingTimeMillis());
+        long deadline = System.currentTimeMillis() + 1000;
+        request.setDeadline(deadline);
+        context.assertEquals(deadline, request.deadline());
+        context.assertTrue(request.remainingTimeMillis() <= 1000);
+    }
+
     @Test
     public void testHandleDataRequestPath(TestContext context) {
         request = new HttpServerRequestImpl(localHost, localPort, requestPath, response);
@@ -262,6 +285,34 @@ public class HttpServerRequestImplTest {
         context.assertEquals("http://localhost:8888/path1", request.absoluteURI());
     }
 
+    @Test
+    public void testMultiValue(TestContext context) {
+        request = new HttpServerRequestImpl(localHost, localPort, requestMultiValue, response);
+        context.assertEquals(Arrays.asList("color", "brand", "size"), request.params().getAll("facet"));
+        context.assertEquals("color", request.getParam("facet"));
+        context.assertEquals(2, request.params().size());
+        context.assertEquals(Arrays.asList("a", "b"), request.headers().getAll("x-tag"));
+        context.assertEquals("facet=color&facet=brand&facet=size&q=shoes", request.query());
+    }
+
+    @Test
+    public void testRawQuery(TestContext context) {
+        request = new HttpServerRequestImpl(localHost, localPort, requestRaw, response);
+        context.assertEquals("/files/my file.txt", request.path());
+        context.assertEquals("q=a+b&tag=x&tag=y", request.query());
+        context.assertEquals("http://localhost:8888/files/my%20file.txt?q=a+b&tag=x&tag=y", request.uri());
+        context.assertEquals(request.uri(), request.absoluteURI());
+    }
+
+    @Test
+    public void testQueryEncoding(TestContext context) throws IOException {
+        LambdaEvent event = LambdaEventDecoder.decode(new ByteArrayInputStream(
+                "{\"path\": \"/\", \"queryStringParameters\": {\"a b\": \"x&y=\u00e9\"}}".getBytes("UTF-8")));
+        request = new HttpServerRequestImpl(localHost, localPort, event, response);
+        context.assertEquals("a%20b=x%26y%3D%C3%A9", request.query());
+        context.assertEquals("http://localhost:8888?a%20b=x%26y%3D%C3%A9", request.uri());
+    }
+
     @Test
     public void testHandleDataRequestPathMultiple(TestContext context) {
         request = new HttpServerRequestImpl(localHost, localPort, requestPathMultiple, response);
@@ -274,24 +325,120 @@ public class HttpServerRequestImplTest {
         context.assertEquals("http://localhost:8888/path1/path2/path3", request.absoluteURI());
     }
 
-    private static JsonObject loadData(String fileName) throws IOException {
-        InputStream inputData = HttpServerRequestImplTest.class.getClassLoader().getResourceAsStream(fileName);
+    @Test
+    public void testHandleDataBase64(TestContext context) {
+        request = new HttpServerRequestImpl(localHost, localPort, requestFull, response);
+        StringBuilder res = new StringBuilder();
+        request.bodyHandler(buffer -> {
+            res.append(buffer.toString());
+        });
+        request.handleData();
+        request.handleEnd();
+        context.assertEquals("request body", res.toString());
+    }
 
-        Buffer inputBuffer;
-        inputBuffer = inputStreamToBuffer(inputData);
+    @Test
+    public void testHandleDataNoHandler(TestContext context) throws IOException {
+        LambdaEvent event = LambdaEventDecoder.decode(new ByteArrayInputStream(
+                "{\"body\": \"not base64!\", \"isBase64Encoded\": true}".getBytes()));
+        request = new HttpServerRequestImpl(localHost, localPort, event, response);
+        // the invalid body isn't decoded as there is no data handler
+        request.handleData();
+        request.handleEnd();
+        context.assertTrue(request.isEnded());
+    }
 
-        JsonObject inputJson;
-        inputJson = new JsonObject(inputBuffer);
-        return inputJson;
+    @Test
+    public void testHandleDataChunks(TestContext context) {
+        request = new HttpServerRequestImpl(localHost, localPort, requestPath, response);
+        request.setChunkSize(15);
+        List<String> chunks = new ArrayList<>();
+        request.handler(buffer -> chunks.add(buffer.toString()));
+        request.handleData();
+        request.handleEnd();
+        context.assertEquals(Arrays.asList("request line 1\n", "request line 2\n", "request line 3"), chunks);
     }
 
-    private static Buffer inputStreamToBuffer(InputStream input) throws IOException {
-        byte[] data = new byte[1024];
+    @Test
+    public void testPauseResume(TestContext context) {
+        request = new HttpServerRequestImpl(localHost, localPort, requestPath, response);
+        request.setChunkSize(15);
+        List<String> chunks = new ArrayList<>();
+        request.handler(buffer -> {
+            chunks.add(buffer.toString());
+            request.pause();
+        });
+        request.endHandler(v -> chunks.add("END"));
+        request.handleData();
+        request.handleEnd();
+        context.assertEquals(Arrays.asList("request line 1\n"), chunks);
+        context.assertFalse(request.isEnded());
+
+        request.resume();
+        context.assertEquals(Arrays.asList("request line 1\n", "request line 2\n"), chunks);
+        request.resume();
+        request.resume();
+        context.assertEquals(Arrays.asList("request line 1\n", "request line 2\n", "request line 3", "END"), chunks);
+        context.assertTrue(request.isEnded());
+    }
+
+    @Test
+    public void testPausedBeforeData(TestContext context) {
+        Vertx vertx = Vertx.vertx();
+        Async async = context.async();
+        request = new HttpServerRequestImpl(localHost, localPort, requestPath, response);
+        request.setContext(vertx.getOrCreateContext());
+        StringBuilder body = new StringBuilder();
+        request.handler(buffer -> {
+            context.assertTrue(Context.isOnEventLoopThread());
+            body.append(buffer.toString());
+        });
+        request.endHandler(v -> {
+            context.assertEquals("request line 1\nrequest line 2\nrequest line 3", body.toString());
+            vertx.close(context.asyncAssertSuccess());
+            async.complete();
+        });
+        request.pause();
+        request.handleData();
+        request.handleEnd();
+        context.assertEquals("", body.toString());
+        request.resume();
+    }
 
-        Buffer buffer = Buffer.buffer();
-        while (((input.read(data, 0, data.length))) != -1) {
-            buffer.appendBytes(data);
-        }
-        return buffer;
+    @Test
+    public void testPausedBeforeHandlers(TestContext context) {
+        request = new HttpServerRequestImpl(localHost, localPort, requestPath, response);
+        request.pause();
+        request.handleData();
+        request.handleEnd();
+        context.assertFalse(request.isEnded());
+
+        List<String> events = new ArrayList<>();
+        request.handler(buffer -> events.add(buffer.toString()));
+        request.endHandler(v -> events.add("END"));
+        context.assertTrue(events.isEmpty());
+
+        request.resume();
+        context.assertEquals(Arrays.asList("request line 1\nrequest line 2\nrequest line 3", "END"), events);
+        context.assertTrue(request.isEnded());
+    }
+
+    @Test
+    public void testPausedEndWithoutHandler(TestContext context) {
+        request = new HttpServerRequestImpl(localHost, localPort, requestPath, response);
+        List<String> events = new ArrayList<>();
+        request.endHandler(v -> events.add("END"));
+        request.pause();
+        request.handleData();
+        request.handleEnd();
+        context.assertTrue(events.isEmpty());
+
+        request.resume();
+        context.assertEquals(Arrays.asList("END"), events);
+    }
+
+    private static LambdaEvent loadData(String fileName) throws IOException {
+        InputStream inputData = HttpServerRequestImplTest.class.getClassLoader().getResourceAsStream(fileName);
+        return LambdaEventDecoder.decode(inputData);
     }
 }
@@ -1,17 +1,33 @@
 package com.alesnosek.io.vertx.aws.lambda.impl;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import com.alesnosek.io.vertx.aws.lambda.StaticAssetCache;
+import com.alesnosek.io.vertx.aws.lambda.impl.ETagDigest;
 import com.alesnosek.io.vertx.aws.lambda.impl.HttpServerResponseImpl;
 
+import io.vertx.core.Context;
+import io.vertx.core.Future;
 import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 
@@ -77,6 +93,117 @@ public class HttpServerResponseImplTest {
         });
     }
 
+    @Test
+    public void testSpillWriteQueue(TestContext context) {
+        Vertx vertx = Vertx.vertx();
+        Async async = context.async();
+        ByteArrayOutputStream output = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                async.complete();
+            }
+        };
+        Context vertxContext = vertx.getOrCreateContext();
+        vertxContext.runOnContext(v -> {
+            HttpServerResponseImpl response = new HttpServerResponseImpl(output);
+            response.setContext(vertxContext);
+            response.setSpill(new File(System.getProperty("java.io.tmpdir")), 16);
+            response.setWriteQueueMaxSize(64);
+            response.setChunked(true);
+            response.write("Some data");
+            // kept on the heap below the spill threshold
+            context.assertFalse(response.writeQueueFull());
+            response.write(Buffer.buffer(new byte[100]));
+            // queued to be spilled, written on a worker thread
+            context.assertTrue(response.writeQueueFull());
+            response.drainHandler(d -> {
+                context.assertFalse(response.writeQueueFull());
+                response.end("the end");
+            });
+        });
+        async.awaitSuccess(10000);
+        vertx.close();
+
+        JsonObject result = new JsonObject(Buffer.buffer(output.toByteArray()));
+        context.assertEquals("116", result.getJsonObject("headers").getString("Content-Length"));
+        byte[] body = result.getBinary("body");
+        context.assertEquals("Some data", new String(body, 0, 9));
+        context.assertEquals("the end", new String(body, 109, 7));
+    }
+
+    @Test
+    public void testSpillEndHandlers(TestContext context) {
+        Vertx vertx = Vertx.vertx();
+        Async async = context.async();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        StringBuilder handlers = new StringBuilder();
+        Context vertxContext = vertx.getOrCreateContext();
+        vertxContext.runOnContext(v -> {
+            HttpServerResponseImpl response = new HttpServerResponseImpl(output);
+            response.setContext(vertxContext);
+            response.setSpill(new File(System.getProperty("java.io.tmpdir")), 16);
+            response.setChunked(true);
+            // called once the spilled body has been written, as for a heap body
+            response.bodyEndHandler(b -> handlers.append("BODY_END:" + (output.size() > 0)));
+            response.endHandler(e -> {
+                handlers.append(" END:" + (output.size() > 0));
+                async.complete();
+            });
+            response.write(Buffer.buffer(new byte[100]));
+            response.end("the end");
+        });
+        async.awaitSuccess(10000);
+        vertx.close();
+
+        context.assertEquals("BODY_END:true END:true", handlers.toString());
+    }
+
+    @Test
+    public void testBufferedWriteQueueNeverFull(TestContext context) {
+        response.setWriteQueueMaxSize(4);
+        response.setChunked(true);
+        response.write("Some data");
+        context.assertFalse(response.writeQueueFull());
+    }
+
+    @Test
+    public void testHeapWriteQueue(TestContext context) {
+        StringBuilder drained = new StringBuilder();
+        // the spilling is disabled, the body stays on the heap
+        response.setSpill(null, 16);
+        response.setChunked(true);
+        response.drainHandler(v -> drained.append("DRAINED"));
+        response.write("Some data");
+        context.assertFalse(response.writeQueueFull());
+        response.write("over the threshold");
+        // cannot be drained, never reported as full
+        context.assertFalse(response.writeQueueFull());
+
+        response.end();
+        context.assertEquals("", drained.toString());
+        context.assertEquals("Some dataover the threshold", new String(readOuput().getBinary("body")));
+    }
+
+    @Test
+    public void testHeapBodyOverPayloadLimit(TestContext context) {
+        StringBuilder errors = new StringBuilder();
+        response.setSpill(null, 16);
+        response.setChunked(true);
+        response.exceptionHandler(t -> errors.append(t.getMessage()));
+        Buffer chunk = Buffer.buffer(new byte[1024 * 1024]);
+        for (int i = 0; i < 7; i++) {
+            response.write(chunk);
+        }
+        context.assertFalse(response.writeQueueFull());
+        context.assertNull(response.body);
+
+        response.end();
+        context.assertEquals("Response body exceeds the Lambda payload limit", errors.toString());
+        JsonObject output = readOuput();
+        context.assertEquals(500, output.getInteger("statusCode"));
+        context.assertEquals(7L * 1024 * 1024, response.bytesWritten());
+    }
+
     @Test
     public void testStatusCode(TestContext context) {
         context.assertEquals(200, response.getStatusCode());
@@ -201,15 +328,514 @@ public class HttpServerResponseImplTest {
         context.assertEquals(data, new String(output.getBinary("body")));
     }
 
-    @Test(expected = java.lang.UnsupportedOperationException.class)
-    public void testSendFileException1(TestContext context) {
-        response.sendFile("X");
+    @Test
+    public void testSendFile(TestContext context) throws IOException {
+        File file = createFile("Some file content");
+        response.sendFile(file.getPath());
+
+        JsonObject output = readOuput();
+        context.assertEquals(200, output.getInteger("statusCode"));
+        context.assertEquals("17", output.getJsonObject("headers").getString("Content-Length"));
+        context.assertEquals("text/plain", output.getJsonObject("headers").getString("Content-Type"));
+        context.assertEquals("Some file content", new String(output.getBinary("body")));
+    }
+
+    @Test
+    public void testSendFileRegion(TestContext context) throws IOException {
+        File file = createFile("Some file content");
+        response.putHeader("Content-Type", "application/octet-stream");
+        response.sendFile(file.getPath(), 5, 4, context.asyncAssertSuccess());
+
+        JsonObject output = readOuput();
+        context.assertEquals("4", output.getJsonObject("headers").getString("Content-Length"));
+        context.assertEquals("application/octet-stream", output.getJsonObject("headers").getString("Content-Type"));
+        context.assertEquals("file", new String(output.getBinary("body")));
+    }
+
+    @Test
+    public void testSendFileRegionPastEnd(TestContext context) throws IOException {
+        File file = createFile("Some file content");
+        response.sendFile(file.getPath(), 10, Long.MAX_VALUE);
+
+        JsonObject output = readOuput();
+        context.assertEquals("7", output.getJsonObject("headers").getString("Content-Length"));
+        context.assertEquals("content", new String(output.getBinary("body")));
+    }
+
+    @Test
+    public void testSendFileNotFound(TestContext context) {
+        response.sendFile("not-existing.txt", 0, Long.MAX_VALUE, context.asyncAssertFailure(t -> {
+            context.assertTrue(t instanceof FileNotFoundException);
+        }));
+        context.assertFalse(response.ended());
+        context.assertEquals(0, responseOutput.size());
+    }
+
+    @Test(expected = java.lang.IllegalStateException.class)
+    public void testSendFileAfterWrite(TestContext context) throws IOException {
+        File file = createFile("Some file content");
+        response.setChunked(true);
+        response.write("Some data");
+        response.sendFile(file.getPath());
+    }
+
+    @Test
+    public void testSendFileCached(TestContext context) throws IOException {
+        StaticAssetCache cache = new StaticAssetCache();
+        File file = createFile("Some file content");
+        response.setStaticAssetCache(cache);
+        response.sendFile(file.getPath());
+
+        JsonObject output = readOuput();
+        JsonObject headers = output.getJsonObject("headers");
+        context.assertEquals("17", headers.getString("Content-Length"));
+        context.assertEquals(cache.get(file).etag(false), headers.getString("ETag"));
+        context.assertNull(headers.getString("Vary"));
+        context.assertEquals("Some file content", new String(output.getBinary("body")));
+        context.assertEquals(1, cache.entries());
+    }
+
+    @Test
+    public void testSendFileCachedGzip(TestContext context) throws IOException {
+        StaticAssetCache cache = new StaticAssetCache();
+        String content = String.join("", Collections.nCopies(100, "Some file content "));
+        File file = createFile(content);
+        response.setStaticAssetCache(cache);
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("Accept-Encoding", "gzip"));
+        response.sendFile(file.getPath());
+
+        JsonObject output = readOuput();
+        JsonObject headers = output.getJsonObject("headers");
+        byte[] compressed = output.getBinary("body");
+        context.assertEquals("gzip", headers.getString("Content-Encoding"));
+        context.assertEquals("Accept-Encoding", headers.getString("Vary"));
+        context.assertEquals(cache.get(file).etag(true), headers.getString("ETag"));
+        context.assertEquals(String.valueOf(compressed.length), headers.getString("Content-Length"));
+        context.assertEquals(content, new String(gunzip(compressed), "UTF-8"));
+    }
+
+    @Test
+    public void testSendFileNotModified(TestContext context) throws IOException {
+        StaticAssetCache cache = new StaticAssetCache();
+        File file = createFile("Some file content");
+        String etag = cache.get(file).etag(false);
+        response.setStaticAssetCache(cache);
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("If-None-Match", "\"other\", " + etag));
+        response.sendFile(file.getPath(), context.asyncAssertSuccess());
+
+        JsonObject output = readOuput();
+        JsonObject headers = output.getJsonObject("headers");
+        context.assertEquals(304, output.getInteger("statusCode"));
+        context.assertEquals(etag, headers.getString("ETag"));
+        context.assertNull(headers.getString("Content-Length"));
+        context.assertEquals("", output.getString("body"));
+    }
+
+    @Test
+    public void testSendFileRegionNotCached(TestContext context) throws IOException {
+        StaticAssetCache cache = new StaticAssetCache();
+        File file = createFile("Some file content");
+        response.setStaticAssetCache(cache);
+        response.sendFile(file.getPath(), 5, 4);
+
+        JsonObject output = readOuput();
+        context.assertNull(output.getJsonObject("headers").getString("ETag"));
+        context.assertEquals("file", new String(output.getBinary("body")));
+        context.assertEquals(0, cache.entries());
+    }
+
+    @Test
+    public void testSendFileRange(TestContext context) throws IOException {
+        File file = createFile("Some file content");
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("Range", "bytes=5-8"));
+        response.sendFile(file.getPath());
+
+        JsonObject output = readOuput();
+        JsonObject headers = output.getJsonObject("headers");
+        context.assertEquals(206, output.getInteger("statusCode"));
+        context.assertEquals("bytes 5-8/17", headers.getString("Content-Range"));
+        context.assertEquals("4", headers.getString("Content-Length"));
+        context.assertEquals("bytes", headers.getString("Accept-Ranges"));
+        context.assertEquals("file", new String(output.getBinary("body")));
+    }
+
+    @Test
+    public void testSendFileMultipleRanges(TestContext context) throws IOException {
+        File file = createFile("Some file content");
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("Range", "bytes=0-3,-7"));
+        response.sendFile(file.getPath());
+
+        JsonObject output = readOuput();
+        JsonObject headers = output.getJsonObject("headers");
+        context.assertEquals(206, output.getInteger("statusCode"));
+        String contentType = headers.getString("Content-Type");
+        context.assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        String body = new String(output.getBinary("body"));
+        context.assertEquals("\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-3/17\r\n\r\nSome"
+                + "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 10-16/17\r\n\r\ncontent"
+                + "\r\n--" + boundary + "--\r\n", body);
+        context.assertEquals(String.valueOf(body.length()), headers.getString("Content-Length"));
+    }
+
+    @Test
+    public void testSendFileRangeNotSatisfiable(TestContext context) throws IOException {
+        File file = createFile("Some file content");
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("Range", "bytes=100-"));
+        response.sendFile(file.getPath());
+
+        JsonObject output = readOuput();
+        JsonObject headers = output.getJsonObject("headers");
+        context.assertEquals(416, output.getInteger("statusCode"));
+        context.assertEquals("bytes */17", headers.getString("Content-Range"));
+        context.assertEquals("0", headers.getString("Content-Length"));
+    }
+
+    @Test
+    public void testSendFileIfRange(TestContext context) throws IOException {
+        File file = createFile("Some file content");
+        response.putHeader("Last-Modified", "Tue, 01 Aug 2017 10:00:00 GMT");
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("Range", "bytes=5-8").add("If-Range",
+                "Tue, 01 Aug 2017 10:00:00 GMT"));
+        response.sendFile(file.getPath());
+
+        context.assertEquals(206, readOuput().getInteger("statusCode"));
+    }
+
+    @Test
+    public void testSendFileIfRangeChanged(TestContext context) throws IOException {
+        StaticAssetCache cache = new StaticAssetCache();
+        File file = createFile("Some file content");
+        response.setStaticAssetCache(cache);
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("Range", "bytes=5-8").add("If-Range",
+                "\"other\""));
+        response.sendFile(file.getPath());
+
+        JsonObject output = readOuput();
+        context.assertEquals(200, output.getInteger("statusCode"));
+        context.assertEquals("Some file content", new String(output.getBinary("body")));
+    }
+
+    @Test
+    public void testSendFileCachedRange(TestContext context) throws IOException {
+        StaticAssetCache cache = new StaticAssetCache();
+        String content = String.join("", Collections.nCopies(100, "Some file content "));
+        File file = createFile(content);
+        String etag = cache.get(file).etag(false);
+        response.setStaticAssetCache(cache);
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("Range", "bytes=18-21")
+                .add("If-Range", etag).add("Accept-Encoding", "gzip"));
+        response.sendFile(file.getPath());
+
+        JsonObject output = readOuput();
+        JsonObject headers = output.getJsonObject("headers");
+        context.assertEquals(206, output.getInteger("statusCode"));
+        context.assertNull(headers.getString("Content-Encoding"));
+        context.assertEquals(etag, headers.getString("ETag"));
+        context.assertEquals("bytes 18-21/1800", headers.getString("Content-Range"));
+        context.assertEquals("Some", new String(output.getBinary("body")));
+    }
+
+    @Test
+    public void testAutoETag(TestContext context) {
+        response.setAutoETag(true);
+        response.setChunked(true);
+        response.write("Some ");
+        response.end("data");
+
+        ETagDigest digest = new ETagDigest();
+        digest.update(Buffer.buffer("Some data"));
+        JsonObject output = readOuput();
+        context.assertEquals(200, output.getInteger("statusCode"));
+        context.assertEquals("W/\"" + digest.hash() + "\"", output.getJsonObject("headers").getString("ETag"));
+        context.assertEquals("Some data", new String(output.getBinary("body")));
+    }
+
+    @Test
+    public void testAutoETagNotModified(TestContext context) {
+        ETagDigest digest = new ETagDigest();
+        digest.update(Buffer.buffer("Some data"));
+        String etag = "W/\"" + digest.hash() + "\"";
+        response.setAutoETag(true);
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("If-None-Match", etag));
+        response.putHeader("Content-Length", "9");
+        response.write("Some ");
+        response.end("data");
+
+        JsonObject output = readOuput();
+        JsonObject headers = output.getJsonObject("headers");
+        context.assertEquals(304, output.getInteger("statusCode"));
+        context.assertEquals(etag, headers.getString("ETag"));
+        context.assertNull(headers.getString("Content-Length"));
+        context.assertEquals("", output.getString("body"));
+    }
+
+    @Test
+    public void testAutoETagSetByApplication(TestContext context) {
+        response.setAutoETag(true);
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("If-None-Match", "\"v1\""));
+        response.putHeader("ETag", "\"v1\"");
+        response.end("Some data");
+
+        JsonObject output = readOuput();
+        context.assertEquals(304, output.getInteger("statusCode"));
+        context.assertEquals("\"v1\"", output.getJsonObject("headers").getString("ETag"));
+    }
+
+    @Test
+    public void testAutoETagNotOk(TestContext context) {
+        response.setAutoETag(true);
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("If-None-Match", "*"));
+        response.setStatusCode(404);
+        response.end("Not found");
+
+        JsonObject output = readOuput();
+        context.assertEquals(404, output.getInteger("statusCode"));
+        context.assertNull(output.getJsonObject("headers").getString("ETag"));
+    }
+
+    @Test
+    public void testSpill(TestContext context) {
+        response.setSpill(new File(System.getProperty("java.io.tmpdir")), 16);
+        response.setChunked(true);
+        response.write("Some data, ");
+        response.write("some more data, ");
+        response.end("the end");
+
+        JsonObject output = readOuput();
+        context.assertEquals("34", output.getJsonObject("headers").getString("Content-Length"));
+        context.assertEquals("Some data, some more data, the end", new String(output.getBinary("body")));
+        context.assertEquals(34L, response.bytesWritten());
     }
 
-    @Test(expected = java.lang.UnsupportedOperationException.class)
-    public void testSendFileException2(TestContext context) {
-        response.sendFile("Y", 0, 10, ar -> {
+    @Test
+    public void testSpillFailed(TestContext context) {
+        StringBuilder errors = new StringBuilder();
+        response.exceptionHandler(t -> errors.append("ERROR"));
+        response.setSpill(new File("not-existing-directory"), 4);
+        response.setChunked(true);
+        response.write("Some data, ");
+        response.end("the end");
+
+        context.assertEquals("ERROR", errors.toString());
+        context.assertEquals("Some data, the end", new String(readOuput().getBinary("body")));
+    }
+
+    @Test
+    public void testResponseOffload(TestContext context) {
+        StringBuilder offloaded = new StringBuilder();
+        response.setResponseOffload((body, headers, handler) -> {
+            offloaded.append(headers.get("Content-Type")).append(':').append(body.length());
+            handler.handle(Future.succeededFuture("https://example.com/body"));
         });
+        response.putHeader("Content-Type", "application/octet-stream");
+        response.putHeader("Cache-Control", "no-cache");
+        // the body is spilled to a file before it's offloaded
+        response.setSpill(new File(System.getProperty("java.io.tmpdir")), 1024);
+        response.setChunked(true);
+        byte[] data = new byte[ResponseCompressor.PAYLOAD_LIMIT];
+        new Random(1).nextBytes(data);
+        Buffer body = Buffer.buffer(data);
+        response.write(body.slice(0, 4096));
+        response.end(body.slice(4096, data.length));
+
+        context.assertEquals((long) data.length, response.bytesWritten());
+        context.assertEquals("application/octet-stream:" + data.length, offloaded.toString());
+        JsonObject output = readOuput();
+        JsonObject headers = output.getJsonObject("headers");
+        context.assertEquals(303, output.getInteger("statusCode"));
+        context.assertEquals("https://example.com/body", headers.getString("Location"));
+        context.assertEquals("no-cache", headers.getString("Cache-Control"));
+        context.assertEquals("0", headers.getString("Content-Length"));
+        context.assertNull(headers.getString("Content-Type"));
+        context.assertNull(headers.getString("Content-Encoding"));
+    }
+
+    @Test
+    public void testResponseOffloadNotNeeded(TestContext context) {
+        response.setResponseOffload((body, headers, handler) -> context.fail());
+        response.end("Some data");
+
+        context.assertEquals(200, readOuput().getInteger("statusCode"));
+    }
+
+    @Test
+    public void testResponseOffloadFailed(TestContext context) {
+        StringBuilder errors = new StringBuilder();
+        response.exceptionHandler(t -> errors.append(t.getMessage()));
+        response.setResponseOffload((body, headers, handler) -> handler.handle(Future.failedFuture("no space")));
+        response.putHeader("Content-Type", "application/octet-stream");
+        byte[] data = new byte[ResponseCompressor.PAYLOAD_LIMIT];
+        new Random(1).nextBytes(data);
+        response.end(Buffer.buffer(data));
+
+        context.assertEquals("no space", errors.toString());
+        context.assertEquals(500, readOuput().getInteger("statusCode"));
+    }
+
+    @Test
+    public void testTimeout(TestContext context) {
+        StringBuilder res = new StringBuilder();
+        response.endHandler(v -> res.append("DONE"));
+        response.putHeader("Content-Length", "10");
+        response.write("Some data");
+        context.assertTrue(response.timeout());
+        context.assertTrue(response.timedOut());
+        context.assertEquals("DONE", res.toString());
+
+        // data written after the timeout is discarded
+        response.end("more data");
+        context.assertFalse(response.timeout());
+
+        JsonObject output = readOuput();
+        context.assertEquals(504, output.getInteger("statusCode"));
+        context.assertEquals("Gateway Timeout", new String(output.getBinary("body")));
+    }
+
+    @Test
+    public void testTimeoutEnded(TestContext context) {
+        response.end("data");
+        context.assertFalse(response.timeout());
+        context.assertFalse(response.timedOut());
+        context.assertEquals(200, readOuput().getInteger("statusCode"));
+    }
+
+    @Test
+    public void testCompression(TestContext context) throws IOException {
+        response.setCompressor(new ResponseCompressor(true, 6, 10, Arrays.asList("application/json")));
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("Accept-Encoding", "gzip, deflate"));
+        response.putHeader("Content-Type", "application/json");
+        response.putHeader("Vary", "Origin");
+        String body = "[\"some data\", \"some data\", \"some data\"]";
+        response.end(body);
+
+        JsonObject output = readOuput();
+        JsonObject headers = output.getJsonObject("headers");
+        context.assertEquals("gzip", headers.getString("Content-Encoding"));
+        context.assertEquals("Origin, Accept-Encoding", headers.getString("Vary"));
+        byte[] compressed = output.getBinary("body");
+        context.assertEquals(String.valueOf(compressed.length), headers.getString("Content-Length"));
+        context.assertEquals(body, new String(gunzip(compressed), "UTF-8"));
+    }
+
+    @Test
+    public void testCompressionNotAccepted(TestContext context) {
+        response.setCompressor(new ResponseCompressor(true, 6, 10, Arrays.asList("application/json")));
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("Accept-Encoding", "identity"));
+        response.putHeader("Content-Type", "application/json");
+        response.end("[\"some data\", \"some data\"]");
+
+        JsonObject headers = readOuput().getJsonObject("headers");
+        context.assertNull(headers.getString("Content-Encoding"));
+        context.assertEquals("Accept-Encoding", headers.getString("Vary"));
+    }
+
+    @Test
+    public void testCompressionSmallBody(TestContext context) {
+        response.setCompressor(new ResponseCompressor(true, 6, 1024, Arrays.asList("application/json")));
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("Accept-Encoding", "gzip"));
+        response.putHeader("Content-Type", "application/json");
+        response.end("[]");
+
+        JsonObject headers = readOuput().getJsonObject("headers");
+        context.assertNull(headers.getString("Content-Encoding"));
+        context.assertNull(headers.getString("Vary"));
+    }
+
+    @Test
+    public void testCompressionOverPayloadLimit(TestContext context) throws IOException {
+        // compression is disabled by default except for the oversized bodies
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("Accept-Encoding", "gzip"));
+        response.putHeader("Content-Type", "application/octet-stream");
+        response.end(Buffer.buffer(new byte[ResponseCompressor.PAYLOAD_LIMIT]));
+
+        JsonObject output = readOuput();
+        context.assertEquals("gzip", output.getJsonObject("headers").getString("Content-Encoding"));
+        context.assertEquals(ResponseCompressor.PAYLOAD_LIMIT, gunzip(output.getBinary("body")).length);
+    }
+
+    @Test
+    public void testNoCompressionTextBodyWithinPayloadLimit(TestContext context) {
+        // over the limit only if it were base64 encoded
+        byte[] data = new byte[ResponseCompressor.PAYLOAD_LIMIT / 4 * 3 + 1];
+        Arrays.fill(data, (byte) 'a');
+        response.setMediaTypePolicy(
+                new MediaTypePolicy(MediaTypePolicy.DEFAULT_TEXT_MEDIA_TYPES, Collections.emptyList()));
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("Accept-Encoding", "gzip"));
+        response.putHeader("Content-Type", "text/plain");
+        response.end(Buffer.buffer(data));
+
+        JsonObject output = readOuput();
+        context.assertFalse(output.getBoolean("isBase64Encoded"));
+        context.assertNull(output.getJsonObject("headers").getString("Content-Encoding"));
+        context.assertNull(output.getJsonObject("headers").getString("Vary"));
+        context.assertEquals(data.length, output.getString("body").length());
+    }
+
+    @Test
+    public void testCompressionAlreadyEncoded(TestContext context) {
+        response.setCompressor(new ResponseCompressor(true, 6, 1, Arrays.asList("*/*")));
+        response.setRequestHeaders(MultiMap.caseInsensitiveMultiMap().add("Accept-Encoding", "gzip"));
+        response.putHeader("Content-Encoding", "br");
+        response.end("data");
+
+        JsonObject output = readOuput();
+        context.assertEquals("br", output.getJsonObject("headers").getString("Content-Encoding"));
+        context.assertEquals("data", new String(output.getBinary("body")));
+    }
+
+    @Test
+    public void testStreaming(TestContext context) throws IOException {
+        response.setStreaming(true);
+        context.assertTrue(response.isStreaming());
+        response.setChunked(true);
+        response.putHeader("Content-Type", "text/plain");
+        response.headers().add("Set-Cookie", "a=1").add("Set-Cookie", "b=2");
+        response.write("chunk1 ");
+
+        // the prelude and the first chunk are written before the end
+        JsonObject prelude = readPrelude();
+        context.assertEquals(200, prelude.getInteger("statusCode"));
+        context.assertEquals("text/plain", prelude.getJsonObject("headers").getString("Content-Type"));
+        context.assertNull(prelude.getJsonObject("headers").getString("Set-Cookie"));
+        context.assertEquals(2, prelude.getJsonArray("cookies").size());
+        context.assertEquals("chunk1 ", readStreamedBody());
+        context.assertFalse(response.writeQueueFull());
+
+        response.end("chunk2");
+        context.assertEquals("chunk1 chunk2", readStreamedBody());
+        context.assertEquals(13L, response.bytesWritten());
+    }
+
+    @Test
+    public void testStreamingEnd(TestContext context) throws IOException {
+        response.setStreaming(true);
+        response.setStatusCode(201).end("data");
+
+        JsonObject prelude = readPrelude();
+        context.assertEquals(201, prelude.getInteger("statusCode"));
+        context.assertEquals("4", prelude.getJsonObject("headers").getString("Content-Length"));
+        context.assertEquals("data", readStreamedBody());
+    }
+
+    @Test
+    public void testStreamingTimeout(TestContext context) throws IOException {
+        response.setStreaming(true);
+        response.setChunked(true).write("partial");
+        context.assertTrue(response.timeout());
+
+        // the status has already been sent, the body is cut off
+        context.assertEquals(200, readPrelude().getInteger("statusCode"));
+        context.assertEquals("partial", readStreamedBody());
+    }
+
+    @Test
+    public void testStreamingTimeoutBeforeHead(TestContext context) throws IOException {
+        response.setStreaming(true);
+        context.assertTrue(response.timeout());
+
+        context.assertEquals(504, readPrelude().getInteger("statusCode"));
+        context.assertEquals("Gateway Timeout", readStreamedBody());
     }
 
     @Test
@@ -292,7 +918,45 @@ public class HttpServerResponseImplTest {
         context.assertEquals(response, response.writeCustomFrame(0, 0, Buffer.buffer()));
     }
 
+    private int preludeLength() {
+        byte[] data = responseOutput.toByteArray();
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private JsonObject readPrelude() throws IOException {
+        return new JsonObject(new String(responseOutput.toByteArray(), 0, preludeLength(), "UTF-8"));
+    }
+
+    private String readStreamedBody() throws IOException {
+        byte[] data = responseOutput.toByteArray();
+        int start = preludeLength() + EnvelopeWriter.PRELUDE_DELIMITER_LENGTH;
+        return new String(data, start, data.length - start, "UTF-8");
+    }
+
+    private byte[] gunzip(byte[] data) throws IOException {
+        GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(data));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] block = new byte[8192];
+        int read;
+        while ((read = input.read(block)) != -1) {
+            output.write(block, 0, read);
+        }
+        return output.toByteArray();
+    }
+
     private JsonObject readOuput() {
         return new JsonObject(Buffer.buffer(responseOutput.toByteArray()));
     }
+
+    private static File createFile(String content) throws IOException {
+        File file = File.createTempFile("send-file", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
 }
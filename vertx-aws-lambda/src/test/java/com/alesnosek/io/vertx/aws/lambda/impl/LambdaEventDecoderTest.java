@@ -0,0 +1,95 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.json.DecodeException;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class LambdaEventDecoderTest {
+
+    @Test
+    public void testDecodeBasic(TestContext context) throws IOException {
+        LambdaEvent event = decodeResource("request_basic.json");
+        context.assertEquals("POST", event.httpMethod());
+        context.assertEquals("/", event.path());
+        context.assertEquals(Arrays.asList("X-H1", "val1"), event.headers());
+        context.assertEquals(Arrays.asList("p1", "1", "p2", "2"), event.queryStringParameters());
+        context.assertNull(event.body());
+        context.assertFalse(event.isBase64Encoded());
+    }
+
+    @Test
+    public void testDecodeFull(TestContext context) throws IOException {
+        LambdaEvent event = decodeResource("request_full.json");
+        context.assertEquals("PUT", event.httpMethod());
+        context.assertEquals("/orders/42", event.path());
+        context.assertEquals(Arrays.asList("Accept", "application/json", "Content-Type", "text/plain",
+                "X-Forwarded-Port", "443"), event.headers());
+        context.assertEquals(Arrays.asList("expand", "items"), event.queryStringParameters());
+        context.assertEquals("cmVxdWVzdCBib2R5", event.body());
+        context.assertTrue(event.isBase64Encoded());
+    }
+
+    @Test
+    public void testDecodeMultiValue(TestContext context) throws IOException {
+        LambdaEvent event = decodeResource("request_multi_value.json");
+        context.assertEquals(Arrays.asList("Accept", "text/html", "X-Tag", "a", "X-Tag", "b"), event.headers());
+        context.assertEquals(Arrays.asList("facet", "color", "facet", "brand", "facet", "size", "q", "shoes"),
+                event.queryStringParameters());
+    }
+
+    @Test
+    public void testDecodeMultiValueFirst(TestContext context) throws IOException {
+        LambdaEvent event = decode("{\"multiValueHeaders\": {\"A\": [\"1\", \"2\"], \"B\": null}, "
+                + "\"headers\": {\"A\": \"2\"}, \"multiValueQueryStringParameters\": null, "
+                + "\"queryStringParameters\": {\"p\": \"1\"}}");
+        context.assertEquals(Arrays.asList("A", "1", "A", "2"), event.headers());
+        context.assertEquals(Arrays.asList("p", "1"), event.queryStringParameters());
+    }
+
+    @Test(expected = DecodeException.class)
+    public void testDecodeInvalidMultiValue(TestContext context) throws IOException {
+        decode("{\"multiValueQueryStringParameters\": {\"p\": \"1\"}}");
+    }
+
+    @Test
+    public void testDecodeRaw(TestContext context) throws IOException {
+        LambdaEvent event = decodeResource("request_raw.json");
+        context.assertEquals("/files/my file.txt", event.path());
+        context.assertEquals("/files/my%20file.txt", event.rawPath());
+        context.assertEquals("q=a+b&tag=x&tag=y", event.rawQueryString());
+        context.assertNull(decodeResource("request_basic.json").rawQueryString());
+    }
+
+    @Test(expected = DecodeException.class)
+    public void testDecodeInvalid(TestContext context) throws IOException {
+        decode("{\"path\": ");
+    }
+
+    @Test(expected = DecodeException.class)
+    public void testDecodeNotObject(TestContext context) throws IOException {
+        decode("[]");
+    }
+
+    @Test(expected = DecodeException.class)
+    public void testDecodeInvalidHeaders(TestContext context) throws IOException {
+        decode("{\"headers\": \"X\"}");
+    }
+
+    private LambdaEvent decode(String json) throws IOException {
+        return LambdaEventDecoder.decode(new ByteArrayInputStream(json.getBytes("UTF-8")));
+    }
+
+    private LambdaEvent decodeResource(String fileName) throws IOException {
+        InputStream input = this.getClass().getClassLoader().getResourceAsStream(fileName);
+        return LambdaEventDecoder.decode(input);
+    }
+}
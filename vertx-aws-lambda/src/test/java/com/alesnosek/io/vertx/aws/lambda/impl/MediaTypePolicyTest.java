@@ -0,0 +1,62 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class MediaTypePolicyTest {
+
+    MediaTypePolicy policy = new MediaTypePolicy(MediaTypePolicy.DEFAULT_TEXT_MEDIA_TYPES,
+            Arrays.asList("text/CSV"));
+
+    Buffer text = Buffer.buffer("text é");
+
+    @Test
+    public void testTextTypes(TestContext context) {
+        context.assertTrue(policy.isText("text/html", text));
+        context.assertTrue(policy.isText("Application/JSON", text));
+        context.assertTrue(policy.isText("application/hal+json", text));
+        context.assertTrue(policy.isText("application/atom+xml; charset=UTF-8", text));
+        context.assertTrue(policy.isText("application/javascript;charset=\"utf-8\"", text));
+    }
+
+    @Test
+    public void testBinaryTypes(TestContext context) {
+        context.assertFalse(policy.isText(null, text));
+        context.assertFalse(policy.isText("image/png", text));
+        context.assertFalse(policy.isText("application/octet-stream", text));
+        context.assertFalse(policy.isText("text/csv", text));
+        context.assertFalse(policy.isText("application/jsonx", text));
+    }
+
+    @Test
+    public void testCharset(TestContext context) {
+        context.assertFalse(policy.isText("text/plain; charset=ISO-8859-1", text));
+        context.assertTrue(policy.isText("text/plain; format=flowed", text));
+    }
+
+    @Test
+    public void testAllBinary(TestContext context) {
+        context.assertFalse(MediaTypePolicy.ALL_BINARY.isText("text/plain", text));
+        context.assertFalse(new MediaTypePolicy(Arrays.asList("*/*"), Collections.emptyList()).isText("text/plain",
+                Buffer.buffer(new byte[] { (byte) 0xFF })));
+    }
+
+    @Test
+    public void testValidUtf8(TestContext context) {
+        context.assertTrue(MediaTypePolicy.isValidUtf8(Unpooled.wrappedBuffer("aé€😀".getBytes())));
+        context.assertFalse(MediaTypePolicy.isValidUtf8(Unpooled.wrappedBuffer(new byte[] { (byte) 0xC3 })));
+        context.assertFalse(MediaTypePolicy.isValidUtf8(Unpooled.wrappedBuffer(new byte[] { (byte) 0xC0, (byte) 0x80 })));
+        context.assertFalse(MediaTypePolicy.isValidUtf8(
+                Unpooled.wrappedBuffer(new byte[] { (byte) 0xED, (byte) 0xA0, (byte) 0x80 })));
+        context.assertFalse(MediaTypePolicy.isValidUtf8(Unpooled.wrappedBuffer(new byte[] { (byte) 0x80 })));
+    }
+}
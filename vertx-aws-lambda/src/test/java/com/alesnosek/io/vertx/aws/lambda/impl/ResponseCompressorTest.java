@@ -0,0 +1,96 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class ResponseCompressorTest {
+
+    ResponseCompressor compressor = new ResponseCompressor(true, 6, 100, Arrays.asList("text/*"));
+
+    @Test
+    public void testNegotiate(TestContext context) {
+        context.assertEquals("gzip", ResponseCompressor.negotiate("gzip, deflate, br"));
+        context.assertEquals("gzip", ResponseCompressor.negotiate("deflate, GZIP"));
+        context.assertEquals("deflate", ResponseCompressor.negotiate("gzip;q=0.5, deflate"));
+        context.assertEquals("deflate", ResponseCompressor.negotiate("gzip;q=0, *"));
+        context.assertEquals("gzip", ResponseCompressor.negotiate("*;q=0.1"));
+        context.assertNull(ResponseCompressor.negotiate("br, identity"));
+        context.assertNull(ResponseCompressor.negotiate("gzip;q=0"));
+        context.assertNull(ResponseCompressor.negotiate(""));
+    }
+
+    @Test
+    public void testEncoding(TestContext context) {
+        context.assertEquals("gzip", compressor.encoding("gzip", "text/html; charset=utf-8", 100, true));
+        context.assertNull(compressor.encoding("gzip", "text/html", 99, true));
+        context.assertNull(compressor.encoding("gzip", "image/png", 1000, true));
+        context.assertNull(compressor.encoding("gzip", null, 1000, true));
+        context.assertNull(compressor.encoding(null, "text/html", 1000, true));
+        context.assertNull(ResponseCompressor.DISABLED.encoding("gzip", "text/html", 1000, true));
+        context.assertEquals("gzip",
+                ResponseCompressor.DISABLED.encoding("gzip", "image/png", ResponseCompressor.PAYLOAD_LIMIT, true));
+    }
+
+    @Test
+    public void testEncodingTextBodyOverBase64Limit(TestContext context) {
+        // fits the payload limit as text, but not base64 encoded
+        int size = ResponseCompressor.PAYLOAD_LIMIT / 4 * 3 + 1;
+        context.assertNull(ResponseCompressor.DISABLED.encoding("gzip", "text/plain", size, false));
+        context.assertFalse(ResponseCompressor.DISABLED.varies("text/plain", size, false));
+        context.assertTrue(ResponseCompressor.DISABLED.varies("text/plain", size, true));
+        context.assertTrue(ResponseCompressor.DISABLED.varies("text/plain", ResponseCompressor.PAYLOAD_LIMIT + 1,
+                false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel(TestContext context) {
+        new ResponseCompressor(true, 0, 100, Arrays.asList("text/*"));
+    }
+
+    @Test
+    public void testGzip(TestContext context) throws IOException {
+        Buffer body = body();
+        Buffer compressed = compressor.compress(body, "gzip");
+        context.assertTrue(compressed.length() < body.length());
+        context.assertEquals(body, read(new GZIPInputStream(new ByteArrayInputStream(compressed.getBytes()))));
+    }
+
+    @Test
+    public void testDeflate(TestContext context) throws IOException {
+        Buffer body = body();
+        Buffer compressed = compressor.compress(body, "deflate");
+        context.assertTrue(compressed.length() < body.length());
+        context.assertEquals(body, read(new InflaterInputStream(new ByteArrayInputStream(compressed.getBytes()))));
+    }
+
+    private Buffer body() {
+        Buffer body = Buffer.buffer();
+        for (int i = 0; i < 1000; i++) {
+            body.appendString("line " + i + "\n");
+        }
+        return body;
+    }
+
+    private Buffer read(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] block = new byte[8192];
+        int read;
+        while ((read = input.read(block)) != -1) {
+            output.write(block, 0, read);
+        }
+        return Buffer.buffer(output.toByteArray());
+    }
+}
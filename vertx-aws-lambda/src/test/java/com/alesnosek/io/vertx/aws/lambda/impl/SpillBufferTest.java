@@ -0,0 +1,48 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class SpillBufferTest {
+
+    File directory = new File(System.getProperty("java.io.tmpdir"));
+
+    @Test
+    public void testAppend(TestContext context) throws IOException {
+        SpillBuffer spill = new SpillBuffer(directory);
+        spill.append(Buffer.buffer("Some "));
+        spill.append(Buffer.buffer(Unpooled.wrappedBuffer(Unpooled.wrappedBuffer("da".getBytes()),
+                Unpooled.wrappedBuffer("ta".getBytes()))));
+        context.assertEquals(9L, spill.length());
+
+        Buffer content = spill.toBuffer();
+        context.assertTrue(content.getByteBuf().isDirect());
+        context.assertEquals(Buffer.buffer("Some data"), content);
+    }
+
+    @Test
+    public void testEmpty(TestContext context) throws IOException {
+        context.assertEquals(0, new SpillBuffer(directory).toBuffer().length());
+    }
+
+    @Test(expected = IOException.class)
+    public void testAppendClosed(TestContext context) throws IOException {
+        SpillBuffer spill = new SpillBuffer(directory);
+        spill.close();
+        spill.append(Buffer.buffer("Some data"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotExistingDirectory(TestContext context) throws IOException {
+        new SpillBuffer(new File("not-existing-directory"));
+    }
+}
@@ -0,0 +1,130 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class StreamingWriterTest {
+
+    Vertx vertx;
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Before
+    public void before(TestContext context) {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void after(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testSynchronous(TestContext context) {
+        StreamingWriter writer = new StreamingWriter(null, output);
+        writer.write(Buffer.buffer("chunk1 "));
+        context.assertEquals("chunk1 ", output.toString());
+        writer.write(Buffer.buffer("chunk2"));
+        writer.close();
+        context.assertEquals("chunk1 chunk2", output.toString());
+        context.assertEquals(0L, writer.queuedBytes());
+    }
+
+    @Test
+    public void testOrderedWrites(TestContext context) {
+        Async async = context.async();
+        OutputStream closing = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                context.assertEquals("0123456789", toString());
+                async.complete();
+            }
+        };
+        vertx.runOnContext(v -> {
+            StreamingWriter writer = new StreamingWriter(vertx.getOrCreateContext(), closing);
+            for (int i = 0; i < 10; i++) {
+                writer.write(Buffer.buffer(String.valueOf(i)));
+            }
+            writer.close();
+        });
+    }
+
+    @Test
+    public void testFlush(TestContext context) {
+        Async async = context.async();
+        vertx.runOnContext(v -> {
+            StreamingWriter writer = new StreamingWriter(vertx.getOrCreateContext(), output);
+            writer.write(Buffer.buffer("chunk1 "));
+            writer.write(Buffer.buffer("chunk2"));
+            writer.flush(f -> {
+                context.assertEquals("chunk1 chunk2", output.toString());
+                context.assertEquals(0L, writer.queuedBytes());
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testWriteQueueFull(TestContext context) {
+        CountDownLatch blocked = new CountDownLatch(1);
+        OutputStream slow = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                try {
+                    blocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        Async async = context.async();
+        vertx.runOnContext(v -> {
+            StreamingWriter writer = new StreamingWriter(vertx.getOrCreateContext(), slow);
+            writer.setWriteQueueMaxSize(100);
+            writer.write(Buffer.buffer(new byte[60]));
+            context.assertFalse(writer.writeQueueFull());
+            writer.write(Buffer.buffer(new byte[60]));
+            context.assertTrue(writer.writeQueueFull());
+            context.assertEquals(120L, writer.queuedBytes());
+            writer.drainHandler(d -> {
+                context.assertFalse(writer.writeQueueFull());
+                async.complete();
+            });
+            blocked.countDown();
+        });
+    }
+
+    @Test
+    public void testWriteFailure(TestContext context) {
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("broken");
+            }
+        };
+        StreamingWriter writer = new StreamingWriter(null, failing);
+        StringBuilder res = new StringBuilder();
+        writer.exceptionHandler(t -> res.append(t.getMessage()));
+        writer.write(Buffer.buffer("a"));
+        writer.write(Buffer.buffer("b"));
+        context.assertEquals("broken", res.toString());
+    }
+}
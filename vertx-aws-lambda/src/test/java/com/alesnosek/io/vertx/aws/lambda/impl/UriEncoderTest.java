@@ -0,0 +1,40 @@
+package com.alesnosek.io.vertx.aws.lambda.impl;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class UriEncoderTest {
+
+    @Test
+    public void testUnreserved(TestContext context) {
+        context.assertEquals("azAZ09-_.*", encode("azAZ09-_.*"));
+    }
+
+    @Test
+    public void testReserved(TestContext context) {
+        context.assertEquals("a%20b%26c%3Dd%2Be%2Ff%3F", encode("a b&c=d+e/f?"));
+    }
+
+    @Test
+    public void testMatchesURLEncoder(TestContext context) throws UnsupportedEncodingException {
+        String value = "pér€ 😀~!'()";
+        context.assertEquals(URLEncoder.encode(value, "UTF-8").replace("+", "%20"), encode(value));
+    }
+
+    @Test
+    public void testAppends(TestContext context) {
+        StringBuilder sb = new StringBuilder("k=");
+        context.assertEquals("k=v%201", UriEncoder.appendEncoded(sb, "v 1").toString());
+    }
+
+    private String encode(String value) {
+        return UriEncoder.appendEncoded(new StringBuilder(), value).toString();
+    }
+}